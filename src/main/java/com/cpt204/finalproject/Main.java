@@ -4,8 +4,14 @@ import com.cpt204.finalproject.dataloader.CsvDataLoader;
 import com.cpt204.finalproject.controller.ConsoleController;
 import com.cpt204.finalproject.dto.TripPlan;
 import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
 import com.cpt204.finalproject.services.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+
 
 public class Main {
     
@@ -30,24 +36,60 @@ public class Main {
 
         // 2. Initialize Services for the new architecture
         // PathfindingService generalPathfinder = new DijkstraPathfindingService(); // Old: using standard Dijkstra
-        DenseDijkstraService denseDijkstraInstance = new DenseDijkstraService(); 
-        PathfindingService generalPathfinder = denseDijkstraInstance; // New: using DenseDijkstra globally for pathfinding
-        DistanceCache distanceCache = new DistanceCache();
+        // Sparse networks (well below V^2 roads) are served faster by the heap-based engine over the CSR adjacency.
+        int numCities = roadNetwork.getNumberOfCities();
+        boolean sparseNetwork = roadNetwork.getNumberOfRoads() < (long) numCities * numCities / 4;
+        boolean smallNetwork = numCities <= AllPairsPathfindingService.PRECOMPUTE_CITY_LIMIT;
+        // Precomputed distances survive restarts in a memory-mapped snapshot stamped with the network fingerprint.
+        // Persistence is opt-in: without -Dtripplanner.snapshot=<file> nothing is read or written.
+        String snapshotProperty = System.getProperty("tripplanner.snapshot");
+        Path snapshotFile = snapshotProperty == null || snapshotProperty.isBlank() ? null : Paths.get(snapshotProperty);
+        PathfindingService precomputationPathfinder;
+        PathfindingService generalPathfinder;
+        if (smallNetwork) {
+            // Small networks precompute every pair once, so segments and DP matrices become table lookups.
+            AllPairsPathfindingService allPairs = new AllPairsPathfindingService(DistanceSnapshot.loadOrComputeAllPairs(snapshotFile, roadNetwork));
+            precomputationPathfinder = allPairs;
+            generalPathfinder = allPairs;
+        } else {
+            // On sparse networks the contraction hierarchy fills the whole |S| x |S| table with bucket-based many-to-many searches.
+            precomputationPathfinder = sparseNetwork ? new ContractionHierarchyPathfindingService() : new DenseDijkstraService();
+            // Segment and permutation legs are point-to-point queries, so sparse networks use the bidirectional search.
+            generalPathfinder = sparseNetwork ? new BidirectionalDijkstraService() : precomputationPathfinder;
+        }
+        DistanceCache distanceCache = new DistanceCache(precomputationPathfinder);
+        if (!smallNetwork) {
+            distanceCache.attachSnapshot(DistanceSnapshot.load(snapshotFile, roadNetwork));
+        }
 
         // Optimizers should be typed as the interface PoiOptimizerService for the TripPlanningService constructor
-        PoiOptimizerService permutationOptimizer = new PermutationPoiOptimizerService(denseDijkstraInstance); 
-        PoiOptimizerService dpOptimizer = new DynamicProgrammingPoiOptimizerService(roadNetwork, denseDijkstraInstance);
+        PoiOptimizerService permutationOptimizer = new PermutationPoiOptimizerService(generalPathfinder); 
+        PoiOptimizerService dpOptimizer = new DynamicProgrammingPoiOptimizerService(roadNetwork, generalPathfinder);
 
-        // Match the constructor: TripPlanningService(RoadNetwork, PathfindingService, PoiOptimizerService, PoiOptimizerService, ShortestPathInfo, DistanceCache, PathfindingService)
+        // Match the constructor: TripPlanningService(RoadNetwork, PathfindingService, PoiOptimizerService, PoiOptimizerService, DistanceCache, PathfindingService)
         TripPlanningService tripPlanningService = new TripPlanningService(
                 roadNetwork,                     // RoadNetwork
-                generalPathfinder,               // PathfindingService (for segments, now DenseDijkstra)
-                permutationOptimizer,            // PoiOptimizerService (permutation, uses DenseDijkstra)
-                dpOptimizer,                     // PoiOptimizerService (DP, fallback uses DenseDijkstra)
+                generalPathfinder,               // PathfindingService (for segments)
+                permutationOptimizer,            // PoiOptimizerService (permutation)
+                dpOptimizer,                     // PoiOptimizerService (DP, fallback for 0 POIs)
                 distanceCache,                   // DistanceCache
-                denseDijkstraInstance            // PathfindingService (for precomputation by DistanceCache, must be DenseDijkstra)
+                precomputationPathfinder         // PathfindingService (for precomputation by DistanceCache: a DistanceTableService or a full-distArray engine)
         );
-        System.out.println("Services initialized with new architecture (DenseDijkstra as global pathfinder).");
+        // Road updates go through the versioned network; the planner and its caches follow every new version.
+        VersionedRoadNetwork versionedNetwork = new VersionedRoadNetwork(roadNetwork);
+        versionedNetwork.addListener(tripPlanningService);
+        System.out.println("Services initialized with " + (smallNetwork ? "FloydWarshall" : sparseNetwork ? "BidirectionalDijkstra" : "DenseDijkstra") + " as global pathfinder.");
+
+        // Warm-up: precompute rows of hub cities in the background while requests are served.
+        // Small networks are skipped since every row is already an all-pairs table lookup.
+        int warmUpCities = Integer.getInteger("tripplanner.warmup.cities", 8);
+        if (!smallNetwork && warmUpCities > 0) {
+            ExecutorService warmUpExecutor = DistanceCacheWarmUp.newExecutor();
+            tripPlanningService.startCacheWarmUp(
+                    DistanceCacheWarmUp.Ranking.fromString(System.getProperty("tripplanner.warmup.ranking", "degree")),
+                    warmUpCities, warmUpExecutor);
+            warmUpExecutor.shutdown(); // The running warm-up finishes; its daemon thread then exits
+        }
 
         // 3. Initialize Controller and Run Application Logic
         try {
@@ -58,6 +100,16 @@ public class Main {
              e.printStackTrace();
         }
        
+        if (!smallNetwork && snapshotFile != null) { // Small networks already stored their all-pairs tables at startup
+            try {
+                if (distanceCache.saveSnapshot(snapshotFile, versionedNetwork.getCurrent(), null)) {
+                    System.out.println("Distance snapshot saved to " + snapshotFile + ".");
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not save distance snapshot: " + e.getMessage());
+            }
+        }
+
         System.out.println("\nApplication finished.");
     }
 } 
\ No newline at end of file
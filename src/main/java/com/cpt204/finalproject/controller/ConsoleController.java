@@ -1,6 +1,7 @@
 package com.cpt204.finalproject.controller;
 
 import com.cpt204.finalproject.dto.TripPlan;
+import com.cpt204.finalproject.model.RoadNetwork;
 import com.cpt204.finalproject.services.TripPlanningService;
 
 import java.util.ArrayList;
@@ -13,6 +14,8 @@ import java.util.Scanner;
  */
 public class ConsoleController {
 
+    private static final int SUGGESTION_LIMIT = 5; // "Did you mean" entries shown for an unknown name
+
     private final TripPlanningService tripPlanningService;
 
     public ConsoleController(TripPlanningService tripPlanningService) {
@@ -29,9 +32,11 @@ public class ConsoleController {
         try (Scanner scanner = new Scanner(System.in)) { // Use try-with-resources for Scanner
             System.out.print("Enter start city name: ");
             String startCityName = scanner.nextLine();
+            warnIfUnknown(startCityName, tripPlanningService.suggestCities(startCityName, SUGGESTION_LIMIT), "City");
 
             System.out.print("Enter end city name: ");
             String endCityName = scanner.nextLine();
+            warnIfUnknown(endCityName, tripPlanningService.suggestCities(endCityName, SUGGESTION_LIMIT), "City");
 
             List<String> attractionsToVisit = new ArrayList<>();
             System.out.println("Enter names of attractions to visit, one per line (leave empty and press Enter when done):");
@@ -41,6 +46,9 @@ public class ConsoleController {
                 if (poiName == null || poiName.trim().isEmpty()) {
                     break; // Exit loop if input is empty
                 }
+                if (warnIfUnknown(poiName, tripPlanningService.suggestAttractions(poiName, SUGGESTION_LIMIT), "Attraction")) {
+                    continue; // Let the user retype it instead of failing the whole plan
+                }
                 attractionsToVisit.add(poiName.trim()); // Add trimmed name
             }
 
@@ -66,4 +74,24 @@ public class ConsoleController {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Prints type-ahead suggestions when a typed name has no exact (case-insensitive) match.
+     * An exact match always comes first among the suggestions, so only the first one needs checking.
+     * @return true if the name is unknown.
+     */
+    private static boolean warnIfUnknown(String name, List<String> suggestions, String kind) {
+        if (name == null || name.trim().isEmpty()) {
+            return false;
+        }
+        if (!suggestions.isEmpty() && RoadNetwork.normalizeName(suggestions.get(0)).equals(RoadNetwork.normalizeName(name))) {
+            return false;
+        }
+        if (suggestions.isEmpty()) {
+            System.out.println(kind + " '" + name.trim() + "' not found.");
+        } else {
+            System.out.println(kind + " '" + name.trim() + "' not found. Did you mean: " + String.join(", ", suggestions) + "?");
+        }
+        return true;
+    }
 } 
\ No newline at end of file
@@ -1,13 +1,12 @@
 package com.cpt204.finalproject.model;
 
-import java.util.Objects;
-
 /**
  * Represents a city in the road network.
- * Each city has a unique name.
+ * Each city has a unique name, and a dense integer id (its index) once a RoadNetwork has been built from it.
  */
 public class City {
     private final String name;
+    private int id = -1; // index in the network that loaded this city, -1 until assigned
 
     /**
      * Constructs a new City.
@@ -28,6 +27,22 @@ public class City {
         return name;
     }
 
+    /**
+     * Gets the dense id assigned when the city was loaded into a RoadNetwork.
+     * Ids are 0..V-1 and double as matrix and array indices in the service layer.
+     * @return The id, or -1 if the city has not been loaded into a network.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Assigns the dense id; only RoadNetwork does this while indexing its cities.
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -38,7 +53,7 @@ public class City {
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return name.hashCode(); // String caches its hash; no varargs array per call
     }
 
     @Override
@@ -0,0 +1,174 @@
+package com.cpt204.finalproject.model;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed sparse row (CSR) adjacency structure over dense city indices.
+ * The outgoing edges of node {@code u} occupy positions {@code [offsets[u], offsets[u + 1])}
+ * of the {@code targets} and {@code weights} arrays, sorted by target index.
+ * All accessors are primitive-indexed so that hot loops never box or allocate.
+ */
+public final class CsrGraph {
+    private final int[] offsets; // length V + 1
+    private final int[] targets; // length E
+    private final double[] weights; // length E
+
+    private CsrGraph(int[] offsets, int[] targets, double[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds a CSR graph from parallel edge arrays.
+     * Self-loops are dropped. If the same (source, target) pair appears more than once,
+     * the last occurrence wins, mirroring how the adjacency matrix was filled.
+     *
+     * @param numNodes The number of nodes (V).
+     * @param sources Source index of each edge.
+     * @param destinations Target index of each edge.
+     * @param distances Weight of each edge.
+     * @param edgeCount The number of valid entries in the edge arrays.
+     * @return The immutable CSR graph.
+     */
+    public static CsrGraph fromEdges(int numNodes, int[] sources, int[] destinations, double[] distances, int edgeCount) {
+        int[] degree = new int[numNodes + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            if (sources[e] != destinations[e]) {
+                degree[sources[e] + 1]++;
+            }
+        }
+        for (int u = 0; u < numNodes; u++) {
+            degree[u + 1] += degree[u];
+        }
+        int[] rowStart = degree; // prefix sums, rowStart[u] is the first slot of u
+        int[] fill = Arrays.copyOf(rowStart, numNodes);
+        // Each slot packs (target, original edge position) so that a plain sort orders a row by target
+        // while keeping input order among duplicates.
+        long[] keys = new long[rowStart[numNodes]];
+        for (int e = 0; e < edgeCount; e++) {
+            int u = sources[e];
+            if (u == destinations[e]) continue;
+            keys[fill[u]++] = ((long) destinations[e] << 32) | e;
+        }
+
+        int[] offsets = new int[numNodes + 1];
+        int[] targets = new int[keys.length];
+        double[] weights = new double[keys.length];
+        int write = 0;
+        for (int u = 0; u < numNodes; u++) {
+            int from = rowStart[u];
+            int to = rowStart[u + 1];
+            Arrays.sort(keys, from, to);
+            offsets[u] = write;
+            for (int i = from; i < to; i++) {
+                int target = (int) (keys[i] >>> 32);
+                double weight = distances[(int) keys[i]];
+                if (write > offsets[u] && targets[write - 1] == target) {
+                    weights[write - 1] = weight; // later edge in input order overrides
+                } else {
+                    targets[write] = target;
+                    weights[write] = weight;
+                    write++;
+                }
+            }
+        }
+        offsets[numNodes] = write;
+        return new CsrGraph(offsets, Arrays.copyOf(targets, write), Arrays.copyOf(weights, write));
+    }
+
+    /**
+     * Builds the transposed graph, i.e. every edge u -> v becomes v -> u with the same weight.
+     * @return A new CSR graph holding the reverse adjacency.
+     */
+    public CsrGraph transpose() {
+        int numNodes = getNumberOfNodes();
+        int edgeCount = targets.length;
+        int[] sources = new int[edgeCount];
+        int[] destinations = new int[edgeCount];
+        for (int u = 0; u < numNodes; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                sources[e] = targets[e];
+                destinations[e] = u;
+            }
+        }
+        return fromEdges(numNodes, sources, destinations, weights, edgeCount);
+    }
+
+    /**
+     * @return The number of nodes (V).
+     */
+    public int getNumberOfNodes() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return The number of stored directed edges (E).
+     */
+    public int getNumberOfEdges() {
+        return targets.length;
+    }
+
+    /**
+     * @param u The node index.
+     * @return The position of the first outgoing edge of {@code u}.
+     */
+    public int edgeStart(int u) {
+        return offsets[u];
+    }
+
+    /**
+     * @param u The node index.
+     * @return One past the position of the last outgoing edge of {@code u}.
+     */
+    public int edgeEnd(int u) {
+        return offsets[u + 1];
+    }
+
+    /**
+     * @param u The node index.
+     * @return The number of outgoing edges of {@code u}.
+     */
+    public int outDegree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+
+    /**
+     * @param edge An edge position in {@code [edgeStart(u), edgeEnd(u))}.
+     * @return The target node index of that edge.
+     */
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @param edge An edge position in {@code [edgeStart(u), edgeEnd(u))}.
+     * @return The weight of that edge.
+     */
+    public double weight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Finds the edge position of u -> v using binary search over the sorted row of {@code u}.
+     * @param u The source node index.
+     * @param v The target node index.
+     * @return The edge position, or -1 if there is no such edge.
+     */
+    public int findEdge(int u, int v) {
+        int lo = offsets[u];
+        int hi = offsets[u + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int t = targets[mid];
+            if (t < v) {
+                lo = mid + 1;
+            } else if (t > v) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
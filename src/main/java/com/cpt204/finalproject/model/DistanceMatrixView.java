@@ -0,0 +1,31 @@
+package com.cpt204.finalproject.model;
+
+/**
+ * Read-only, zero-copy view of the dense direct-distance matrix of a {@link RoadNetwork}.
+ * Entries are Double.POSITIVE_INFINITY where there is no direct road and 0 on the diagonal.
+ */
+public interface DistanceMatrixView {
+
+    /**
+     * @return The number of rows and columns (the number of cities).
+     */
+    int size();
+
+    /**
+     * Gets the direct distance between two cities by index.
+     * @param from The source city index.
+     * @param to The destination city index.
+     * @return The direct distance.
+     */
+    double get(int from, int to);
+
+    /**
+     * Copies a slice of one row into a caller-owned buffer, so repeated scans can reuse one array.
+     * @param from The source city index (row).
+     * @param fromColumn The first column to copy.
+     * @param destination The buffer to write into.
+     * @param destinationOffset The first position written in {@code destination}.
+     * @param length The number of columns to copy.
+     */
+    void copyRow(int from, int fromColumn, double[] destination, int destinationOffset, int length);
+}
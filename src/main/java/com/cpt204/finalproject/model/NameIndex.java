@@ -0,0 +1,356 @@
+package com.cpt204.finalproject.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable trie over normalised names for type-ahead lookups. Nodes live in flat arrays in breadth-first order,
+ * so the children of a node are one contiguous, label-sorted range found by binary search and a whole index
+ * costs a few bytes per distinct character. Lookups only visit the part of the trie they need:
+ * prefix matches walk down once and then list names in lexicographic order until the limit is reached;
+ * edit-distance matches run one Levenshtein row per visited node and prune branches that already exceed the bound.
+ * An index may also hold each name under the start of every later word, so "museum" finds "British Museum";
+ * every lookup still lists a display name at most once.
+ */
+public final class NameIndex {
+    private final char[] label; // label[node] = character on the edge into node (unused for the root)
+    private final int[] childStart; // children of node are childStart[node] .. childStart[node + 1] - 1 (breadth-first numbering)
+    private final int[] terminal; // terminal[node] = index into keys/values of the first key ending here, or -1
+    private final String[] keys; // normalised names (and word starts), sorted; equal keys are adjacent
+    private final String[] values; // display name for each key
+    private final int nameCount;
+    private final int maxKeyLength;
+
+    private NameIndex(char[] label, int[] childStart, int[] terminal, String[] keys, String[] values, int nameCount, int maxKeyLength) {
+        this.label = label;
+        this.childStart = childStart;
+        this.terminal = terminal;
+        this.keys = keys;
+        this.values = values;
+        this.nameCount = nameCount;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * Builds the index over whole names only.
+     * @param entries Display names keyed by their normalised form ({@link RoadNetwork#normalizeName(String)}).
+     * @return The index over all keys.
+     */
+    public static NameIndex build(Map<String, String> entries) {
+        return build(entries, false);
+    }
+
+    /**
+     * Builds the index.
+     * @param entries Display names keyed by their normalised form ({@link RoadNetwork#normalizeName(String)}).
+     * @param indexWordStarts true to also index each name from the start of every later word
+     *                        (a letter or digit after any other character).
+     * @return The index over all keys.
+     */
+    public static NameIndex build(Map<String, String> entries, boolean indexWordStarts) {
+        List<String[]> pairs = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            pairs.add(new String[]{key, entry.getValue()});
+            for (int i = 1; indexWordStarts && i < key.length(); i++) {
+                if (Character.isLetterOrDigit(key.charAt(i)) && !Character.isLetterOrDigit(key.charAt(i - 1))) {
+                    pairs.add(new String[]{key.substring(i), entry.getValue()});
+                }
+            }
+        }
+        pairs.sort(Comparator.<String[], String>comparing(pair -> pair[0]).thenComparing(pair -> pair[1]));
+        String[] keys = new String[pairs.size()];
+        String[] values = new String[pairs.size()];
+        int totalChars = 1;
+        int maxKeyLength = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = pairs.get(i)[0];
+            values[i] = pairs.get(i)[1];
+            totalChars += keys[i].length();
+            maxKeyLength = Math.max(maxKeyLength, keys[i].length());
+        }
+
+        char[] label = new char[totalChars];
+        int[] childStart = new int[totalChars + 1];
+        int[] terminal = new int[totalChars];
+        // Nodes are numbered in creation (breadth-first) order, so these per-node ranges double as the work queue.
+        int[] low = new int[totalChars];
+        int[] high = new int[totalChars];
+        int[] depth = new int[totalChars];
+        high[0] = keys.length;
+        int nodeCount = 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int from = low[node];
+            int to = high[node];
+            int d = depth[node];
+            terminal[node] = -1;
+            if (from < to && keys[from].length() == d) {
+                terminal[node] = from; // in sorted order the keys ending here come before their extensions
+                while (from < to && keys[from].length() == d) {
+                    from++;
+                }
+            }
+            childStart[node] = nodeCount;
+            while (from < to) {
+                char c = keys[from].charAt(d);
+                int end = from + 1;
+                while (end < to && keys[end].charAt(d) == c) {
+                    end++;
+                }
+                label[nodeCount] = c;
+                low[nodeCount] = from;
+                high[nodeCount] = end;
+                depth[nodeCount] = d + 1;
+                nodeCount++;
+                from = end;
+            }
+        }
+        childStart[nodeCount] = nodeCount;
+        return new NameIndex(Arrays.copyOf(label, nodeCount), Arrays.copyOf(childStart, nodeCount + 1),
+                Arrays.copyOf(terminal, nodeCount), keys, values, entries.size(), maxKeyLength);
+    }
+
+    /**
+     * @return The number of distinct names in the index.
+     */
+    public int size() {
+        return nameCount;
+    }
+
+    /**
+     * Lists names starting with the prefix, shorter names first along each branch, in lexicographic order
+     * of the matched key (the name, or the word it matched from).
+     * @param prefix The typed prefix; normalised before matching.
+     * @param limit The maximum number of results.
+     * @return Up to {@code limit} display names.
+     */
+    public List<String> prefixMatches(String prefix, int limit) {
+        if (prefix == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        String key = RoadNetwork.normalizeName(prefix);
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = findChild(node, key.charAt(i));
+        }
+        if (node < 0) {
+            return new ArrayList<>();
+        }
+        Set<String> results = new LinkedHashSet<>(); // a name can be reached from several of its words
+        // Pre-order walk with children pushed in reverse, which visits names in lexicographic order
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = node;
+        while (size > 0 && results.size() < limit) {
+            int current = stack[--size];
+            if (terminal[current] >= 0) {
+                for (int k = terminal[current], end = keyRunEnd(k); k < end && results.size() < limit; k++) {
+                    results.add(values[k]);
+                }
+            }
+            for (int child = childStart[current + 1] - 1; child >= childStart[current]; child--) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = child;
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Lists names within a bounded Levenshtein distance of the query, closest first.
+     * @param query The query; normalised before matching.
+     * @param maxEdits The maximum number of inserted, deleted or substituted characters.
+     * @param limit The maximum number of results.
+     * @return Up to {@code limit} display names ordered by distance, then name.
+     */
+    public List<String> fuzzyMatches(String query, int maxEdits, int limit) {
+        return search(query, maxEdits, limit, false, 0);
+    }
+
+    /**
+     * Type-ahead suggestions: names starting with the query, followed by names whose beginning is within a few
+     * edits of it (one edit from 4 typed characters, two from 8), so typos still find the intended name.
+     * As in most type-ahead engines, the first character must match, which keeps the fuzzy part to one branch.
+     * @param query The text typed so far; normalised before matching.
+     * @param limit The maximum number of results.
+     * @return Up to {@code limit} display names, best first.
+     */
+    public List<String> suggest(String query, int limit) {
+        List<String> exact = prefixMatches(query, limit);
+        if (query == null || exact.size() >= limit) {
+            return exact;
+        }
+        int length = RoadNetwork.normalizeName(query).length();
+        int maxEdits = length >= 8 ? 2 : length >= 4 ? 1 : 0;
+        if (maxEdits == 0) {
+            return exact;
+        }
+        Set<String> merged = new LinkedHashSet<>(exact);
+        for (String name : search(query, maxEdits, limit, true, 1)) {
+            if (merged.size() >= limit) {
+                break;
+            }
+            merged.add(name);
+        }
+        return new ArrayList<>(merged);
+    }
+
+    /**
+     * @return The index after the last key equal to {@code keys[first]}.
+     */
+    private int keyRunEnd(int first) {
+        int end = first + 1;
+        while (end < keys.length && keys[end].equals(keys[first])) {
+            end++;
+        }
+        return end;
+    }
+
+    private int findChild(int node, char c) {
+        int low = childStart[node];
+        int high = childStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (label[mid] < c) {
+                low = mid + 1;
+            } else if (label[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** A candidate result: the key index and its edit distance. */
+    private static final class Match {
+        final int keyIndex;
+        final int distance;
+
+        Match(int keyIndex, int distance) {
+            this.keyIndex = keyIndex;
+            this.distance = distance;
+        }
+    }
+
+    /** The best matches found so far, at most one per display name, with the worst on top so it is the one replaced. */
+    private final class TopMatches {
+        private final int limit;
+        private final int maxEdits;
+        private final PriorityQueue<Match> heap = new PriorityQueue<>(matchOrder().reversed());
+        private final Map<String, Match> byName = new HashMap<>();
+
+        TopMatches(int limit, int maxEdits) {
+            this.limit = limit;
+            this.maxEdits = maxEdits;
+        }
+
+        /**
+         * @return The largest distance that can still enter.
+         */
+        int bound() {
+            return heap.size() < limit ? maxEdits : Math.min(maxEdits, heap.peek().distance - 1);
+        }
+
+        /** Offers every key equal to {@code keys[first]}; a name already held at the same or a smaller distance is skipped. */
+        void offer(int first, int distance) {
+            for (int k = first, end = keyRunEnd(first); k < end && distance <= bound(); k++) {
+                Match previous = byName.get(values[k]);
+                if (previous != null) {
+                    if (previous.distance <= distance) {
+                        continue;
+                    }
+                    heap.remove(previous);
+                }
+                Match match = new Match(k, distance);
+                heap.add(match);
+                byName.put(values[k], match);
+                if (heap.size() > limit) {
+                    byName.remove(values[heap.poll().keyIndex]);
+                }
+            }
+        }
+    }
+
+    private Comparator<Match> matchOrder() {
+        return Comparator.<Match>comparingInt(m -> m.distance).thenComparing(m -> keys[m.keyIndex]).thenComparing(m -> values[m.keyIndex]);
+    }
+
+    /**
+     * Depth-first Levenshtein search over the trie. With {@code prefixMode}, a name matches when the query is within
+     * the bound of any of its prefixes. Keeps the best {@code limit} matches; once that many are found, only
+     * strictly closer names can enter (later names are lexicographically larger), so the bound tightens as it runs.
+     * With {@code exactFirstChar} of 1, only the branch of the query's first character is searched.
+     */
+    private List<String> search(String query, int maxEdits, int limit, boolean prefixMode, int exactFirstChar) {
+        List<String> results = new ArrayList<>();
+        if (query == null || limit <= 0 || maxEdits < 0) {
+            return results;
+        }
+        String key = RoadNetwork.normalizeName(query);
+        int[][] rows = new int[maxKeyLength + 1][key.length() + 1];
+        for (int j = 0; j <= key.length(); j++) {
+            rows[0][j] = j;
+        }
+        TopMatches best = new TopMatches(limit, maxEdits);
+        int rootPrefixDistance = key.length(); // the empty prefix needs every query character inserted
+        if (terminal[0] >= 0) {
+            best.offer(terminal[0], rootPrefixDistance);
+        }
+        int firstChild = childStart[0];
+        int lastChild = childStart[1] - 1;
+        if (exactFirstChar > 0) {
+            if (key.isEmpty() || (firstChild = lastChild = findChild(0, key.charAt(0))) < 0) {
+                return results;
+            }
+        }
+        for (int child = firstChild; child <= lastChild; child++) {
+            visit(child, 1, key, rows, prefixMode, prefixMode ? rootPrefixDistance : Integer.MAX_VALUE, best);
+        }
+        Match[] ordered = best.heap.toArray(new Match[0]);
+        Arrays.sort(ordered, matchOrder());
+        for (Match match : ordered) {
+            results.add(values[match.keyIndex]);
+        }
+        return results;
+    }
+
+    private void visit(int node, int depth, String key, int[][] rows,
+                       boolean prefixMode, int bestPrefixDistance, TopMatches best) {
+        int[] previous = rows[depth - 1];
+        int[] row = rows[depth];
+        char c = label[node];
+        row[0] = depth;
+        int rowMin = depth;
+        for (int j = 1; j <= key.length(); j++) {
+            int substitution = previous[j - 1] + (key.charAt(j - 1) == c ? 0 : 1);
+            int value = Math.min(substitution, Math.min(previous[j] + 1, row[j - 1] + 1));
+            row[j] = value;
+            rowMin = Math.min(rowMin, value);
+        }
+        int distance = row[key.length()];
+        if (prefixMode) {
+            bestPrefixDistance = Math.min(bestPrefixDistance, distance);
+            distance = bestPrefixDistance;
+        }
+        if (terminal[node] >= 0) {
+            best.offer(terminal[node], distance);
+        }
+        int bound = best.bound();
+        if (rowMin > bound && !(prefixMode && bestPrefixDistance <= bound)) {
+            return; // no extension of this branch can come within the bound
+        }
+        for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+            visit(child, depth + 1, key, rows, prefixMode, bestPrefixDistance, best);
+        }
+    }
+}
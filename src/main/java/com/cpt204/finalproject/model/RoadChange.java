@@ -0,0 +1,72 @@
+package com.cpt204.finalproject.model;
+
+/**
+ * Describes one directed road update between two consecutive network versions.
+ * A missing road has distance Double.POSITIVE_INFINITY, so an added road is a decrease from infinity
+ * and a removed road is an increase to infinity.
+ */
+public final class RoadChange {
+    private final RoadNetwork previous;
+    private final RoadNetwork current;
+    private final int fromIndex;
+    private final int toIndex;
+    private final double oldDistance;
+    private final double newDistance;
+
+    public RoadChange(RoadNetwork previous, RoadNetwork current, int fromIndex, int toIndex, double oldDistance, double newDistance) {
+        this.previous = previous;
+        this.current = current;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.oldDistance = oldDistance;
+        this.newDistance = newDistance;
+    }
+
+    public RoadNetwork getPrevious() {
+        return previous;
+    }
+
+    public RoadNetwork getCurrent() {
+        return current;
+    }
+
+    public int getFromIndex() {
+        return fromIndex;
+    }
+
+    public int getToIndex() {
+        return toIndex;
+    }
+
+    /**
+     * @return The distance before the update, or Double.POSITIVE_INFINITY if the road was added.
+     */
+    public double getOldDistance() {
+        return oldDistance;
+    }
+
+    /**
+     * @return The distance after the update, or Double.POSITIVE_INFINITY if the road was removed.
+     */
+    public double getNewDistance() {
+        return newDistance;
+    }
+
+    /**
+     * @return true if the road got longer or was removed, so shortest paths can only get longer.
+     */
+    public boolean isIncrease() {
+        return newDistance > oldDistance;
+    }
+
+    @Override
+    public String toString() {
+        return "RoadChange{" +
+               "from=" + previous.getCityByIndex(fromIndex) +
+               ", to=" + previous.getCityByIndex(toIndex) +
+               ", oldDistance=" + oldDistance +
+               ", newDistance=" + newDistance +
+               ", version=" + current.getVersion() +
+               '}';
+    }
+}
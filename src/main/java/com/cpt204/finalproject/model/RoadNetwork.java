@@ -3,8 +3,9 @@ package com.cpt204.finalproject.model;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.ArrayList;
@@ -12,18 +13,28 @@ import java.util.Arrays; // Added for Arrays.fill
 
 /**
  * Represents the road network, containing cities and the roads connecting them.
- * Optimized for dense/complete graphs using an adjacency matrix for direct distances.
+ * Direct distances are stored in a compressed sparse row graph; a dense adjacency matrix
+ * is still available for algorithms optimized for dense/complete graphs.
  */
 public class RoadNetwork {
     private final List<City> cities; // Ordered list of cities corresponding to matrix indices
     private final Map<String, City> citiesByName; // For quick lookup by name
+    private final Map<String, City> citiesByNormalizedName; // Case-insensitive lookup, keys from normalizeName
     private final Map<City, Integer> cityToIndex; // Map city object to its matrix index
-    private final double[][] distanceMatrix; // Stores direct distances between cities
-    // Adjacency list is removed
-    private final Map<String, Set<Attraction>> attractionsByCity;
+    private final CsrGraph adjacency; // Sparse direct distances, the primary edge storage
+    private final CsrGraph reverseAdjacency; // Transposed adjacency (incoming roads), for backward searches
+    private volatile double[][] distanceMatrix; // Dense direct distances, materialised from adjacency on first use
+    private volatile DistanceMatrixView distanceMatrixView; // Shared read-only view over distanceMatrix
+    private final Map<String, Set<Attraction>> attractionsByCity; // Keyed by normalised city name
+    private final Map<String, Attraction> attractionsByNormalizedName; // First loaded attraction per normalised name
+    private final Set<Attraction> allAttractions; // Unmodifiable, in load order
+    private volatile NameIndex cityNameIndex; // Type-ahead trie over city names, built on first use
+    private volatile NameIndex attractionNameIndex; // Type-ahead trie over attraction names, built on first use
+    private final long version; // 0 when loaded, +1 for every road update derived from it
 
     /**
-     * Constructs a RoadNetwork using an adjacency matrix approach.
+     * Constructs a RoadNetwork. Direct roads are stored in an immutable CSR adjacency structure;
+     * the dense V x V matrix is only built if a caller asks for it, so large sparse networks can be loaded.
      *
      * @param allCities A collection of all unique City objects in the network.
      * @param allRoads A collection of all Road objects defining direct connections.
@@ -32,50 +43,133 @@ public class RoadNetwork {
     public RoadNetwork(Collection<City> allCities, Collection<Road> allRoads, Collection<Attraction> allAttractions) {
         this.cities = new ArrayList<>(allCities);
         this.citiesByName = new HashMap<>();
+        this.citiesByNormalizedName = new HashMap<>();
         this.cityToIndex = new HashMap<>();
         for (int i = 0; i < this.cities.size(); i++) {
             City city = this.cities.get(i);
             this.citiesByName.put(city.getName(), city);
+            this.citiesByNormalizedName.putIfAbsent(normalizeName(city.getName()), city);
             this.cityToIndex.put(city, i);
+            city.setId(i);
         }
 
         int numCities = this.cities.size();
-        this.distanceMatrix = new double[numCities][numCities];
-        for (int i = 0; i < numCities; i++) {
-            Arrays.fill(this.distanceMatrix[i], Double.POSITIVE_INFINITY);
-            this.distanceMatrix[i][i] = 0; // Distance to self is 0
-        }
-
+        int roadCount = allRoads != null ? allRoads.size() : 0;
+        int[] sources = new int[roadCount];
+        int[] destinations = new int[roadCount];
+        double[] distances = new double[roadCount];
+        int edgeCount = 0;
         if (allRoads != null) {
             for (Road road : allRoads) {
                 if (road != null) {
                     Integer u = this.cityToIndex.get(road.getSource());
                     Integer v = this.cityToIndex.get(road.getDestination());
                     if (u != null && v != null) {
-                        // Store the direct distance. If multiple roads exist, CsvDataLoader should handle this
-                        // or this assumes CsvDataLoader provides unique, shortest direct roads if duplicates exist.
-                         this.distanceMatrix[u][v] = road.getDistance();
+                        // If multiple roads exist between the same pair, the last one wins (as with the old matrix).
+                        sources[edgeCount] = u;
+                        destinations[edgeCount] = v;
+                        distances[edgeCount] = road.getDistance();
+                        edgeCount++;
                     } else {
                         System.err.println("Warning: Road contains city not mapped to index: " + road);
                     }
                 }
             }
         }
+        this.adjacency = CsrGraph.fromEdges(numCities, sources, destinations, distances, edgeCount);
+        this.reverseAdjacency = this.adjacency.transpose();
+        this.version = 0;
 
         this.attractionsByCity = new HashMap<>();
+        this.attractionsByNormalizedName = new HashMap<>();
+        Set<Attraction> attractionsInLoadOrder = new LinkedHashSet<>();
         if (allAttractions != null) {
              for (Attraction attraction : allAttractions) {
-                 if (attraction != null && this.citiesByName.containsKey(attraction.getCityName())) {
-                      this.attractionsByCity.computeIfAbsent(attraction.getCityName(), k -> new HashSet<>()).add(attraction);
+                 String normalizedCityName = attraction == null ? null : normalizeName(attraction.getCityName());
+                 if (attraction != null && this.citiesByNormalizedName.containsKey(normalizedCityName)) {
+                      this.attractionsByCity.computeIfAbsent(normalizedCityName, k -> new LinkedHashSet<>()).add(attraction);
+                      this.attractionsByNormalizedName.putIfAbsent(normalizeName(attraction.getAttractionName()), attraction);
+                      attractionsInLoadOrder.add(attraction);
                  } else if (attraction != null) {
                       System.err.println("Warning: Skipping attraction due to unknown city: " + attraction);
                  }
              }
         }
+        this.allAttractions = Collections.unmodifiableSet(attractionsInLoadOrder);
     }
 
     /**
-     * Gets a city by its name. Performs case-insensitive and trimmed matching.
+     * Normalises a city or attraction name for case-insensitive lookups.
+     * @param name The name as typed or loaded.
+     * @return The trimmed, lower-cased key.
+     */
+    public static String normalizeName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Creates a later version of a network that differs only in its roads. Cities, indices and attractions are shared.
+     */
+    private RoadNetwork(RoadNetwork base, CsrGraph adjacency) {
+        this.cities = base.cities;
+        this.citiesByName = base.citiesByName;
+        this.citiesByNormalizedName = base.citiesByNormalizedName;
+        this.cityToIndex = base.cityToIndex;
+        this.attractionsByCity = base.attractionsByCity;
+        this.attractionsByNormalizedName = base.attractionsByNormalizedName;
+        this.allAttractions = base.allAttractions;
+        this.cityNameIndex = base.cityNameIndex;
+        this.attractionNameIndex = base.attractionNameIndex;
+        this.adjacency = adjacency;
+        this.reverseAdjacency = adjacency.transpose();
+        this.version = base.version + 1;
+    }
+
+    /**
+     * Derives the next version of this network with one directed road added, changed or removed.
+     * This network is left untouched, so searches running on it are not disturbed.
+     *
+     * @param fromIndex The source city index.
+     * @param toIndex The destination city index.
+     * @param distance The new road distance, or Double.POSITIVE_INFINITY to remove the road.
+     * @return A new network whose version is one higher.
+     */
+    public RoadNetwork withRoad(int fromIndex, int toIndex, double distance) {
+        int edgeCount = adjacency.getNumberOfEdges();
+        int[] sources = new int[edgeCount + 1];
+        int[] destinations = new int[edgeCount + 1];
+        double[] distances = new double[edgeCount + 1];
+        int count = 0;
+        for (int u = 0; u < cities.size(); u++) {
+            for (int e = adjacency.edgeStart(u); e < adjacency.edgeEnd(u); e++) {
+                if (u == fromIndex && adjacency.target(e) == toIndex) {
+                    continue;
+                }
+                sources[count] = u;
+                destinations[count] = adjacency.target(e);
+                distances[count] = adjacency.weight(e);
+                count++;
+            }
+        }
+        if (distance != Double.POSITIVE_INFINITY) {
+            sources[count] = fromIndex;
+            destinations[count] = toIndex;
+            distances[count] = distance;
+            count++;
+        }
+        return new RoadNetwork(this, CsrGraph.fromEdges(cities.size(), sources, destinations, distances, count));
+    }
+
+    /**
+     * Gets the version of this network: 0 as loaded, incremented by every {@link #withRoad} update.
+     * @return The version number.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets a city by its name. Performs case-insensitive and trimmed matching with one hash lookup.
      * @param name The name of the city.
      * @return The City object, or null if not found.
      */
@@ -83,17 +177,8 @@ public class RoadNetwork {
         if (name == null) {
             return null;
         }
-        String normalizedInput = name.trim().toLowerCase();
-        // Iterate through the cities Map for case-insensitive comparison
-        for (Map.Entry<String, City> entry : citiesByName.entrySet()) {
-            String key = entry.getKey();
-            if (key != null && key.trim().toLowerCase().equals(normalizedInput)) {
-                return entry.getValue();
-            }
-        }
-        // Fallback or alternative: If citiesByName keys were already normalized during construction
-        // return citiesByName.get(normalizedInput);
-        return null; // Not found
+        City exact = citiesByName.get(name); // Names as loaded need no normalisation
+        return exact != null ? exact : citiesByNormalizedName.get(normalizeName(name));
     }
 
     /**
@@ -123,7 +208,26 @@ public class RoadNetwork {
      * @return The index of the city, or null if not found.
      */
     public Integer getCityIndex(City city) {
-        return cityToIndex.get(city);
+        int index = indexOf(city);
+        return index < 0 ? null : index;
+    }
+
+    /**
+     * Gets the index of a city without boxing. Cities loaded into this network carry their index as
+     * {@link City#getId()}, so no hashing is needed; other instances with the same name fall back to the map.
+     * @param city The city object, may be null.
+     * @return The index of the city, or -1 if not found.
+     */
+    public int indexOf(City city) {
+        if (city == null) {
+            return -1;
+        }
+        int id = city.getId();
+        if (id >= 0 && id < cities.size() && cities.get(id) == city) {
+            return id;
+        }
+        Integer index = cityToIndex.get(city);
+        return index == null ? -1 : index;
     }
 
     /**
@@ -137,28 +241,109 @@ public class RoadNetwork {
         Integer u = cityToIndex.get(fromCity);
         Integer v = cityToIndex.get(toCity);
         if (u != null && v != null) {
-            return distanceMatrix[u][v];
+            return getDirectDistance(u, v);
         }
         return Double.POSITIVE_INFINITY;
     }
+
+    /**
+     * Gets the direct distance between two cities by index.
+     * @param fromIndex The source city index.
+     * @param toIndex The destination city index.
+     * @return The direct distance, 0 for the same city, or Double.POSITIVE_INFINITY if there is no direct road.
+     */
+    public double getDirectDistance(int fromIndex, int toIndex) {
+        if (fromIndex == toIndex) {
+            return 0;
+        }
+        int edge = adjacency.findEdge(fromIndex, toIndex);
+        return edge >= 0 ? adjacency.weight(edge) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Provides primitive-indexed access to the direct roads in compressed sparse row form.
+     * The returned structure is immutable and shared, so no copy is made.
+     * @return The outgoing adjacency of every city, indexed by city index.
+     */
+    public CsrGraph getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Provides the transposed adjacency: row {@code v} lists every city {@code u} with a direct road u -> v,
+     * weighted by that road's distance. Used by searches that run backward from a destination.
+     * @return The incoming adjacency of every city, indexed by city index.
+     */
+    public CsrGraph getReverseAdjacency() {
+        return reverseAdjacency;
+    }
+
+    /**
+     * Gets the number of directed road segments stored in the network.
+     * @return The number of directed roads (excluding self-loops).
+     */
+    public int getNumberOfRoads() {
+        return adjacency.getNumberOfEdges();
+    }
     
+    /**
+     * Provides read-only access to the dense distance matrix without copying it.
+     * Prefer this over {@link #getDistanceMatrix()} in algorithms that only read edge weights.
+     * @return A view backed directly by the internal matrix.
+     */
+    public DistanceMatrixView getDistanceMatrixView() {
+        DistanceMatrixView view = distanceMatrixView;
+        if (view == null) {
+            denseDistanceMatrix();
+            view = distanceMatrixView;
+        }
+        return view;
+    }
+
     /**
      * Provides access to the raw distance matrix. Use with caution.
+     * This allocates a full V x V copy on every call; use {@link #getDistanceMatrixView()} for read-only access.
      * @return A copy of the distance matrix to prevent external modification.
      */
     public double[][] getDistanceMatrix() {
+        double[][] matrix = denseDistanceMatrix();
         // Return a copy to prevent external modification of the internal state
-        double[][] copy = new double[distanceMatrix.length][];
-        for (int i = 0; i < distanceMatrix.length; i++) {
-            copy[i] = Arrays.copyOf(distanceMatrix[i], distanceMatrix[i].length);
+        double[][] copy = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = Arrays.copyOf(matrix[i], matrix[i].length);
         }
         return copy;
     }
 
+    /**
+     * Lazily expands the sparse adjacency into the dense V x V matrix.
+     */
+    private double[][] denseDistanceMatrix() {
+        double[][] matrix = distanceMatrix;
+        if (matrix == null) {
+            synchronized (this) {
+                matrix = distanceMatrix;
+                if (matrix == null) {
+                    int numCities = cities.size();
+                    matrix = new double[numCities][numCities];
+                    for (int u = 0; u < numCities; u++) {
+                        Arrays.fill(matrix[u], Double.POSITIVE_INFINITY);
+                        matrix[u][u] = 0; // Distance to self is 0
+                        for (int e = adjacency.edgeStart(u); e < adjacency.edgeEnd(u); e++) {
+                            matrix[u][adjacency.target(e)] = adjacency.weight(e);
+                        }
+                    }
+                    distanceMatrixView = new ArrayDistanceMatrixView(matrix);
+                    distanceMatrix = matrix;
+                }
+            }
+        }
+        return matrix;
+    }
+
     /**
      * Gets all road segments originating from a given city. 
-     * For an adjacency matrix representation, this dynamically reconstructs Road objects.
-     * This can be less efficient than directly working with the matrix if only distances are needed.
+     * Road objects are reconstructed from the sparse adjacency, so only actual roads are visited.
      * @param city The source city.
      * @return An unmodifiable list of roads starting from the city.
      */
@@ -167,25 +352,20 @@ public class RoadNetwork {
         if (u == null) {
             return Collections.emptyList();
         }
-        List<Road> outgoingRoads = new ArrayList<>();
-        for (int v = 0; v < cities.size(); v++) {
-            if (distanceMatrix[u][v] != Double.POSITIVE_INFINITY && u != v) {
-                outgoingRoads.add(new Road(city, cities.get(v), distanceMatrix[u][v]));
-            }
+        List<Road> outgoingRoads = new ArrayList<>(adjacency.outDegree(u));
+        for (int e = adjacency.edgeStart(u); e < adjacency.edgeEnd(u); e++) {
+            outgoingRoads.add(new Road(city, cities.get(adjacency.target(e)), adjacency.weight(e)));
         }
         return Collections.unmodifiableList(outgoingRoads);
     }
     
-    // getAllRoads() can be implemented similarly to getRoadsFrom by iterating all possible pairs
+    // getAllRoads() walks every CSR row in index order, mirroring getRoadsFrom
     public Collection<Road> getAllRoads() {
-        List<Road> allRoads = new ArrayList<>();
+        List<Road> allRoads = new ArrayList<>(adjacency.getNumberOfEdges());
         for (int u = 0; u < cities.size(); u++) {
             City sourceCity = cities.get(u);
-            for (int v = 0; v < cities.size(); v++) {
-                if (u == v) continue; // No self-loops for roads in this context
-                if (distanceMatrix[u][v] != Double.POSITIVE_INFINITY) {
-                    allRoads.add(new Road(sourceCity, cities.get(v), distanceMatrix[u][v]));
-                }
+            for (int e = adjacency.edgeStart(u); e < adjacency.edgeEnd(u); e++) {
+                allRoads.add(new Road(sourceCity, cities.get(adjacency.target(e)), adjacency.weight(e)));
             }
         }
         return Collections.unmodifiableCollection(allRoads);
@@ -209,11 +389,7 @@ public class RoadNetwork {
         if (cityName == null) {
             return Collections.emptySet();
         }
-        String normalizedCityName = cityName.toLowerCase().trim();
-        Set<Attraction> cityAttractions = attractionsByCity.get(normalizedCityName);
-        if (cityAttractions == null) {
-            cityAttractions = attractionsByCity.get(cityName);
-        }
+        Set<Attraction> cityAttractions = attractionsByCity.get(normalizeName(cityName));
         return cityAttractions != null ? Collections.unmodifiableSet(cityAttractions) : Collections.emptySet();
     }
 
@@ -222,10 +398,85 @@ public class RoadNetwork {
      * @return An unmodifiable collection of all attractions.
      */
      public Collection<Attraction> getAllAttractions() {
-         Set<Attraction> all = new HashSet<>();
-         for(Set<Attraction> cityAttractions : attractionsByCity.values()){
-             all.addAll(cityAttractions);
-         }
-         return Collections.unmodifiableSet(all);
+         return allAttractions; // Built once at construction
      }
-} 
\ No newline at end of file
+
+    /**
+     * Gets an attraction by its name, ignoring case and surrounding whitespace.
+     * @param name The attraction name.
+     * @return The attraction (the first one loaded if several share the name), or null if not found.
+     */
+    public Attraction getAttractionByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return attractionsByNormalizedName.get(normalizeName(name));
+    }
+
+    /**
+     * Gets the type-ahead index over city names (prefix and edit-distance lookups), building it on first use.
+     * @return The city name index.
+     */
+    public NameIndex getCityNameIndex() {
+        NameIndex index = cityNameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = cityNameIndex;
+                if (index == null) {
+                    Map<String, String> names = new HashMap<>();
+                    citiesByNormalizedName.forEach((key, city) -> names.put(key, city.getName()));
+                    index = NameIndex.build(names);
+                    cityNameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the type-ahead index over attraction names (prefix and edit-distance lookups), building it on first use.
+     * Names are also indexed from each word start, so a query can match any word of a name.
+     * @return The attraction name index.
+     */
+    public NameIndex getAttractionNameIndex() {
+        NameIndex index = attractionNameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = attractionNameIndex;
+                if (index == null) {
+                    Map<String, String> names = new HashMap<>();
+                    attractionsByNormalizedName.forEach((key, attraction) -> names.put(key, attraction.getAttractionName()));
+                    index = NameIndex.build(names, true);
+                    attractionNameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Read-only view backed directly by the internal dense matrix.
+     */
+    private static final class ArrayDistanceMatrixView implements DistanceMatrixView {
+        private final double[][] matrix;
+
+        private ArrayDistanceMatrixView(double[][] matrix) {
+            this.matrix = matrix;
+        }
+
+        @Override
+        public int size() {
+            return matrix.length;
+        }
+
+        @Override
+        public double get(int from, int to) {
+            return matrix[from][to];
+        }
+
+        @Override
+        public void copyRow(int from, int fromColumn, double[] destination, int destinationOffset, int length) {
+            System.arraycopy(matrix[from], fromColumn, destination, destinationOffset, length);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.cpt204.finalproject.model;
+
+/**
+ * Receives road updates from a {@link VersionedRoadNetwork}, e.g. to invalidate or repair cached distances.
+ */
+public interface RoadNetworkListener {
+
+    /**
+     * Called after a new network version has been published.
+     * @param change The update, including the previous and the current network.
+     */
+    void roadChanged(RoadChange change);
+}
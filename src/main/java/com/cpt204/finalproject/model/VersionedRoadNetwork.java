@@ -0,0 +1,89 @@
+package com.cpt204.finalproject.model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mutable handle on a sequence of immutable {@link RoadNetwork} versions. Every road update publishes a new
+ * version and then tells the registered listeners exactly which directed road changed, so caches can keep
+ * everything the change cannot affect. Updates are serialised; readers always see a complete version.
+ */
+public final class VersionedRoadNetwork {
+    private volatile RoadNetwork current;
+    private final List<RoadNetworkListener> listeners = new CopyOnWriteArrayList<>();
+
+    public VersionedRoadNetwork(RoadNetwork initial) {
+        if (initial == null) {
+            throw new IllegalArgumentException("Initial RoadNetwork cannot be null");
+        }
+        this.current = initial;
+    }
+
+    /**
+     * @return The latest network version.
+     */
+    public RoadNetwork getCurrent() {
+        return current;
+    }
+
+    public long getVersion() {
+        return current.getVersion();
+    }
+
+    public void addListener(RoadNetworkListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RoadNetworkListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds the directed road or changes its distance.
+     * @param fromCityName The source city name.
+     * @param toCityName The destination city name.
+     * @param distance The new distance; must be a non-negative finite number.
+     * @return The applied change, or null if the road already had this distance.
+     */
+    public RoadChange setRoadDistance(String fromCityName, String toCityName, double distance) {
+        if (!(distance >= 0) || Double.isInfinite(distance)) {
+            throw new IllegalArgumentException("Road distance must be a non-negative finite number, got " + distance);
+        }
+        return update(fromCityName, toCityName, distance);
+    }
+
+    /**
+     * Removes the directed road, e.g. for a closure.
+     * @param fromCityName The source city name.
+     * @param toCityName The destination city name.
+     * @return The applied change, or null if there was no such road.
+     */
+    public RoadChange removeRoad(String fromCityName, String toCityName) {
+        return update(fromCityName, toCityName, Double.POSITIVE_INFINITY);
+    }
+
+    private synchronized RoadChange update(String fromCityName, String toCityName, double distance) {
+        RoadNetwork previous = current;
+        City from = previous.getCityByName(fromCityName);
+        City to = previous.getCityByName(toCityName);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Unknown city in road update: " + fromCityName + " -> " + toCityName);
+        }
+        int fromIndex = previous.getCityIndex(from);
+        int toIndex = previous.getCityIndex(to);
+        if (fromIndex == toIndex) {
+            throw new IllegalArgumentException("A road cannot start and end at the same city: " + fromCityName);
+        }
+        double oldDistance = previous.getDirectDistance(fromIndex, toIndex);
+        if (oldDistance == distance) {
+            return null;
+        }
+        RoadNetwork next = previous.withRoad(fromIndex, toIndex, distance);
+        RoadChange change = new RoadChange(previous, next, fromIndex, toIndex, oldDistance, distance);
+        current = next;
+        for (RoadNetworkListener listener : listeners) {
+            listener.roadChanged(change);
+        }
+        return change;
+    }
+}
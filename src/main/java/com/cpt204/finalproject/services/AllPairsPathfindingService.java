@@ -0,0 +1,131 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.Attraction;
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.RoadNetworkListener;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers every query from precomputed {@link AllPairsShortestPaths} tables: distances are single lookups,
+ * paths follow the next-hop matrix, and distance tables for DistanceCache are gathered without any search.
+ * The tables are computed lazily on the first query for a network unless supplied up front.
+ * On a road update only the rows the change can affect are recomputed.
+ */
+public final class AllPairsPathfindingService implements PathfindingService, DistanceTableService, RoadNetworkListener {
+    private static final String ALGORITHM_NAME = "FloydWarshall";
+    /** Networks up to this many cities are small enough to precompute every pair at load time. */
+    public static final int PRECOMPUTE_CITY_LIMIT = 256;
+
+    private volatile AllPairsShortestPaths tables;
+
+    public AllPairsPathfindingService() {
+    }
+
+    /**
+     * @param tables Tables that were already computed; queries on other networks compute their own.
+     */
+    public AllPairsPathfindingService(AllPairsShortestPaths tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Gets the tables for the network, computing them on first use.
+     * @param network The road network being queried.
+     * @return The all-pairs tables for that network.
+     */
+    public AllPairsShortestPaths getTables(RoadNetwork network) {
+        AllPairsShortestPaths t = tables;
+        if (t == null || t.getNetwork() != network) {
+            synchronized (this) {
+                t = tables;
+                if (t == null || t.getNetwork() != network) {
+                    t = AllPairsShortestPaths.compute(network);
+                    tables = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @param network A road network.
+     * @return The tables for that network if they are already computed, otherwise null.
+     */
+    AllPairsShortestPaths peekTables(RoadNetwork network) {
+        AllPairsShortestPaths t = tables;
+        return t != null && t.getNetwork() == network ? t : null;
+    }
+
+    @Override
+    public void roadChanged(RoadChange change) {
+        synchronized (this) {
+            AllPairsShortestPaths t = tables;
+            if (t != null && t.getNetwork() == change.getPrevious()) {
+                tables = t.withRoadChange(change);
+            }
+        }
+    }
+
+    @Override
+    public PathResult findShortestPath(
+            RoadNetwork network, City src, City dst,
+            List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) {
+
+        int srcIndex = network.indexOf(src);
+        int dstIndex = network.indexOf(dst);
+        if (srcIndex < 0 || (dst != null && dstIndex < 0)) {
+            return PathResult.empty(ALGORITHM_NAME);
+        }
+        return findShortestPath(network, srcIndex, dstIndex, useTimeout, timeoutMillis);
+    }
+
+    @Override
+    public PathResult findShortestPath(RoadNetwork network, int srcIndex, int dstIndex, boolean useTimeout, long timeoutMillis) {
+        final AllPairsShortestPaths apsp = getTables(network); // preprocessing is not counted against the query time
+        final long startTime = System.nanoTime();
+        if (dstIndex < 0) {
+            double[] distArray = apsp.copyRow(srcIndex);
+            return new PathResult(List.of(), Double.NaN, distArray, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+        double distance = apsp.distance(srcIndex, dstIndex);
+        List<City> path = apsp.path(srcIndex, dstIndex);
+        return new PathResult(path, distance, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+    }
+
+    @Override
+    public double[][] computeDistanceTable(RoadNetwork network, List<City> sources, List<City> targets) {
+        final AllPairsShortestPaths apsp = getTables(network);
+        int[] sourceIndices = resolveIndices(network, sources);
+        int[] targetIndices = resolveIndices(network, targets);
+        double[][] table = new double[sourceIndices.length][targetIndices.length];
+        for (int i = 0; i < sourceIndices.length; i++) {
+            if (sourceIndices[i] < 0) {
+                Arrays.fill(table[i], Double.POSITIVE_INFINITY);
+                continue;
+            }
+            for (int j = 0; j < targetIndices.length; j++) {
+                table[i][j] = targetIndices[j] < 0 ? Double.POSITIVE_INFINITY : apsp.distance(sourceIndices[i], targetIndices[j]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return The city indices, -1 for cities that are not in the network.
+     */
+    private static int[] resolveIndices(RoadNetwork network, List<City> cities) {
+        int[] indices = new int[cities.size()];
+        for (int i = 0; i < indices.length; i++) {
+            Integer index = network.getCityIndex(cities.get(i));
+            indices[i] = index == null ? -1 : index;
+            if (index == null) {
+                System.err.println("Error: City " + cities.get(i).getName() + " not found in network index during table computation.");
+            }
+        }
+        return indices;
+    }
+}
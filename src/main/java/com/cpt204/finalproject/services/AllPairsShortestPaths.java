@@ -0,0 +1,282 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.DistanceMatrixView;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.nio.DoubleBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All-pairs shortest path tables computed once with cache-blocked Floyd-Warshall.
+ * Distances are kept in one flat row-major array ({@code dist[i * V + j]}) next to a compact next-hop matrix
+ * of shorts ({@code next[i * V + j]} = first city after i on a shortest path to j, or -1), so any distance is
+ * a single read and any path is rebuilt by following next hops. Tables loaded from a {@link DistanceSnapshot}
+ * are read in place from the mapped file; computed tables are heap arrays behind the same buffer views.
+ * Intended for small networks, where O(V^3) preprocessing and O(V^2) memory are cheaper than repeated searches.
+ */
+public final class AllPairsShortestPaths {
+    /** Next hops are stored as shorts, which caps the table size. */
+    public static final int MAX_CITIES = Short.MAX_VALUE;
+    private static final int BLOCK_SIZE = 64; // 64 x 64 doubles = 32 KB per tile, fits in L1/L2
+
+    private final RoadNetwork network;
+    private final int numCities;
+    private final DoubleBuffer dist; // read with absolute gets only, so the positions never move
+    private final ShortBuffer next;
+
+    private AllPairsShortestPaths(RoadNetwork network, DoubleBuffer dist, ShortBuffer next) {
+        this.network = network;
+        this.numCities = network.getNumberOfCities();
+        this.dist = dist;
+        this.next = next;
+    }
+
+    /**
+     * Computes the tables for the network. Tiles that do not depend on each other within a round
+     * are relaxed in parallel on the common fork-join pool.
+     *
+     * @param network The road network to preprocess.
+     * @return The all-pairs tables for {@code network}.
+     */
+    public static AllPairsShortestPaths compute(RoadNetwork network) {
+        final int V = network.getNumberOfCities();
+        if (V > MAX_CITIES) {
+            throw new IllegalArgumentException("All-pairs tables support at most " + MAX_CITIES + " cities, got " + V);
+        }
+        double[] dist = new double[V * V];
+        short[] next = new short[V * V];
+        DistanceMatrixView matrix = network.getDistanceMatrixView();
+        for (int i = 0; i < V; i++) {
+            matrix.copyRow(i, 0, dist, i * V, V);
+            dist[i * V + i] = 0;
+            for (int j = 0; j < V; j++) {
+                next[i * V + j] = dist[i * V + j] == Double.POSITIVE_INFINITY ? -1 : (short) j;
+            }
+        }
+
+        final int blocks = (V + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<TileTask> tasks = new ArrayList<>();
+        for (int kb = 0; kb < blocks; kb++) {
+            // Round 1: the pivot tile depends only on itself.
+            relaxTile(dist, next, V, kb, kb, kb);
+            // Round 2: tiles in the pivot row and column depend only on themselves and the pivot tile.
+            tasks.clear();
+            for (int b = 0; b < blocks; b++) {
+                if (b != kb) {
+                    tasks.add(new TileTask(dist, next, V, kb, b, kb));
+                    tasks.add(new TileTask(dist, next, V, b, kb, kb));
+                }
+            }
+            runAll(tasks);
+            // Round 3: every remaining tile reads only the pivot row and column tiles finished above.
+            tasks.clear();
+            for (int ib = 0; ib < blocks; ib++) {
+                for (int jb = 0; jb < blocks; jb++) {
+                    if (ib != kb && jb != kb) {
+                        tasks.add(new TileTask(dist, next, V, ib, jb, kb));
+                    }
+                }
+            }
+            runAll(tasks);
+        }
+        return new AllPairsShortestPaths(network, DoubleBuffer.wrap(dist), ShortBuffer.wrap(next));
+    }
+
+    /**
+     * Wraps tables that were computed earlier, e.g. mapped from a {@link DistanceSnapshot}.
+     * The buffers are read in place, not copied, and must not be modified afterwards.
+     */
+    static AllPairsShortestPaths fromTables(RoadNetwork network, DoubleBuffer dist, ShortBuffer next) {
+        int V = network.getNumberOfCities();
+        if (dist.capacity() != V * V || next.capacity() != V * V) {
+            throw new IllegalArgumentException("Table sizes do not match a network of " + V + " cities.");
+        }
+        return new AllPairsShortestPaths(network, dist, next);
+    }
+
+    /**
+     * Derives the tables of the changed network. Rows the change cannot affect are copied; every other row
+     * is recomputed with one single-source search on the new network, and its next hops are read off the search tree.
+     *
+     * @param change A road update whose previous network is the one these tables belong to.
+     * @return Tables for {@code change.getCurrent()}.
+     */
+    AllPairsShortestPaths withRoadChange(RoadChange change) {
+        if (change.getPrevious() != network) {
+            throw new IllegalArgumentException("Road change does not start from the network of these tables.");
+        }
+        final int V = numCities;
+        double[] newDist = new double[V * V];
+        short[] newNext = new short[V * V];
+        dist.get(0, newDist);
+        next.get(0, newNext);
+        double[] row = new double[V];
+        int[] prev = new int[V];
+        int[] firstHop = new int[V];
+        int[] stack = new int[V];
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+        int from = change.getFromIndex();
+        int to = change.getToIndex();
+        for (int s = 0; s < V; s++) {
+            if (!RoadChangeImpact.affects(change, dist.get(s * V + from), dist.get(s * V + to), null)) {
+                continue;
+            }
+            BinaryHeapDijkstraService.computeAllDistances(change.getCurrent().getAdjacency(), s, row, prev, heap);
+            System.arraycopy(row, 0, newDist, s * V, V);
+            // firstHop[t] = child of s on the tree path to t; resolved once per node by walking up to a known ancestor
+            Arrays.fill(firstHop, -2);
+            firstHop[s] = s;
+            for (int t = 0; t < V; t++) {
+                int depth = 0;
+                int node = t;
+                while (firstHop[node] == -2) {
+                    if (prev[node] < 0) {
+                        firstHop[node] = -1; // unreachable
+                        break;
+                    }
+                    if (prev[node] == s) {
+                        firstHop[node] = node;
+                        break;
+                    }
+                    stack[depth++] = node;
+                    node = prev[node];
+                }
+                int hop = firstHop[node];
+                while (depth > 0) {
+                    firstHop[stack[--depth]] = hop;
+                }
+                newNext[s * V + t] = (short) firstHop[t];
+            }
+        }
+        return new AllPairsShortestPaths(change.getCurrent(), DoubleBuffer.wrap(newDist), ShortBuffer.wrap(newNext));
+    }
+
+    /** Raw row-major distance table, for serialisation only. */
+    DoubleBuffer distanceTable() {
+        return dist.duplicate();
+    }
+
+    /** Raw row-major next-hop table, for serialisation only. */
+    ShortBuffer nextHopTable() {
+        return next.duplicate();
+    }
+
+    private static void runAll(List<TileTask> tasks) {
+        if (tasks.size() == 1) {
+            tasks.get(0).compute(); // not worth a fork for a single tile
+        } else if (!tasks.isEmpty()) {
+            ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Relaxes tile (ib, jb) through every intermediate city of block kb.
+     * The k loop is outermost so that tiles overlapping the pivot row or column see their own updates in order.
+     */
+    private static void relaxTile(double[] dist, short[] next, int V, int ib, int jb, int kb) {
+        final int iEnd = Math.min(V, (ib + 1) * BLOCK_SIZE);
+        final int jStart = jb * BLOCK_SIZE;
+        final int jEnd = Math.min(V, jStart + BLOCK_SIZE);
+        final int kEnd = Math.min(V, (kb + 1) * BLOCK_SIZE);
+        for (int k = kb * BLOCK_SIZE; k < kEnd; k++) {
+            final int kRow = k * V;
+            for (int i = ib * BLOCK_SIZE; i < iEnd; i++) {
+                final int iRow = i * V;
+                final double dik = dist[iRow + k];
+                if (dik == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                final short hop = next[iRow + k];
+                for (int j = jStart; j < jEnd; j++) {
+                    double candidate = dik + dist[kRow + j];
+                    if (candidate < dist[iRow + j]) {
+                        dist[iRow + j] = candidate;
+                        next[iRow + j] = hop;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] dist;
+        private final short[] next;
+        private final int numCities;
+        private final int ib;
+        private final int jb;
+        private final int kb;
+
+        TileTask(double[] dist, short[] next, int numCities, int ib, int jb, int kb) {
+            this.dist = dist;
+            this.next = next;
+            this.numCities = numCities;
+            this.ib = ib;
+            this.jb = jb;
+            this.kb = kb;
+        }
+
+        @Override
+        protected void compute() {
+            relaxTile(dist, next, numCities, ib, jb, kb);
+        }
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @param from The source city index.
+     * @param to The destination city index.
+     * @return The shortest distance, or Double.POSITIVE_INFINITY if unreachable.
+     */
+    public double distance(int from, int to) {
+        return dist.get(from * numCities + to);
+    }
+
+    /**
+     * @param from The source city index.
+     * @param to The destination city index.
+     * @return The city index following {@code from} on a shortest path to {@code to}, or -1 if unreachable or equal.
+     */
+    public int nextHop(int from, int to) {
+        return from == to ? -1 : next.get(from * numCities + to);
+    }
+
+    /**
+     * @param from The source city index.
+     * @return A fresh copy of the distance row of {@code from}, indexed by city index.
+     */
+    public double[] copyRow(int from) {
+        double[] row = new double[numCities];
+        dist.get(from * numCities, row);
+        return row;
+    }
+
+    /**
+     * Rebuilds the shortest path by following next hops.
+     * @param from The source city index.
+     * @param to The destination city index.
+     * @return The cities on the path including both ends, or an empty list if unreachable.
+     */
+    public List<City> path(int from, int to) {
+        if (dist.get(from * numCities + to) == Double.POSITIVE_INFINITY) {
+            return List.of();
+        }
+        List<City> path = new ArrayList<>();
+        path.add(network.getCityByIndex(from));
+        for (int node = from; node != to; node = next.get(node * numCities + to)) {
+            path.add(network.getCityByIndex(next.get(node * numCities + to)));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,141 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.Attraction;
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A* search guided by landmark lower bounds (ALT). The {@link LandmarkIndex} is built lazily on the first
+ * query for a network and reused for later queries on the same network instance.
+ * Calls without a destination fall back to a full single-source search for the distArray contract.
+ */
+public final class AltPathfindingService implements PathfindingService {
+    private static final String ALGORITHM_NAME = "ALT (A* + Landmarks)";
+    private static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    private final int landmarkCount;
+    private final PathfindingService singleSourceFallback = new BinaryHeapDijkstraService();
+    private volatile LandmarkIndex landmarkIndex;
+
+    public AltPathfindingService() {
+        this(DEFAULT_LANDMARK_COUNT);
+    }
+
+    public AltPathfindingService(int landmarkCount) {
+        if (landmarkCount <= 0) {
+            throw new IllegalArgumentException("Landmark count must be positive.");
+        }
+        this.landmarkCount = landmarkCount;
+    }
+
+    /**
+     * Creates a service around tables that were already preprocessed, e.g. at application start.
+     * @param landmarkIndex The landmark tables; queries on other networks rebuild their own tables.
+     */
+    public AltPathfindingService(LandmarkIndex landmarkIndex) {
+        this(landmarkIndex.getLandmarkCount());
+        this.landmarkIndex = landmarkIndex;
+    }
+
+    /**
+     * Gets the landmark tables for the network, building them on first use.
+     * @param network The road network being queried.
+     * @return The landmark index for that network.
+     */
+    public LandmarkIndex getLandmarkIndex(RoadNetwork network) {
+        LandmarkIndex index = landmarkIndex;
+        if (index == null || index.getNetwork() != network) {
+            synchronized (this) {
+                index = landmarkIndex;
+                if (index == null || index.getNetwork() != network) {
+                    index = LandmarkIndex.build(network, landmarkCount);
+                    landmarkIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public PathResult findShortestPath(
+            RoadNetwork network, City src, City dst,
+            List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) {
+
+        if (dst == null) {
+            return singleSourceFallback.findShortestPath(network, src, null, ignorePois, useTimeout, timeoutMillis);
+        }
+
+        final long startTime = System.nanoTime();
+        final long deadline = useTimeout ? startTime + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
+        Integer srcIndexInteger = network.getCityIndex(src);
+        Integer dstIndexInteger = network.getCityIndex(dst);
+        if (srcIndexInteger == null || dstIndexInteger == null) {
+            return PathResult.empty(ALGORITHM_NAME);
+        }
+        int srcIndex = srcIndexInteger;
+        int dstIndex = dstIndexInteger;
+
+        final LandmarkIndex index = getLandmarkIndex(network);
+        final int V = network.getNumberOfCities();
+        final CsrGraph graph = network.getAdjacency();
+        double[] dist = new double[V];
+        double[] potential = new double[V]; // cached lower bound to dst, NaN until first computed
+        int[] prev = new int[V];
+        boolean[] settled = new boolean[V];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(potential, Double.NaN);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+
+        double startBound = index.lowerBound(srcIndex, dstIndex);
+        if (startBound == Double.POSITIVE_INFINITY) {
+            return new PathResult(List.of(), Double.POSITIVE_INFINITY, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+        dist[srcIndex] = 0;
+        potential[srcIndex] = startBound;
+        heap.insertOrDecrease(srcIndex, startBound);
+        int steps = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled[u] = true; // landmark potentials are consistent, so a settled distance is final
+            if (u == dstIndex) {
+                break;
+            }
+            double du = dist[u];
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.target(e);
+                double candidate = du + graph.weight(e);
+                if (settled[v] || candidate >= dist[v]) {
+                    continue;
+                }
+                double h = potential[v];
+                if (Double.isNaN(h)) {
+                    h = index.lowerBound(v, dstIndex);
+                    potential[v] = h;
+                }
+                if (h == Double.POSITIVE_INFINITY) {
+                    continue; // dst is provably unreachable from v
+                }
+                dist[v] = candidate;
+                prev[v] = u;
+                heap.insertOrDecrease(v, candidate + h);
+            }
+            if (useTimeout && (++steps & 0xFF) == 0 && System.nanoTime() > deadline) {
+                return PathResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTime) / 1_000_000.0);
+            }
+        }
+
+        double finalDistance = dist[dstIndex];
+        List<City> path = List.of();
+        if (finalDistance != Double.POSITIVE_INFINITY) {
+            path = PathReconstructionHelper.reconstructPath(network, prev, srcIndex, dstIndex);
+        }
+        final double duration = (System.nanoTime() - startTime) / 1_000_000.0;
+        return new PathResult(path, finalDistance, duration, false, ALGORITHM_NAME);
+    }
+}
@@ -0,0 +1,129 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.Attraction;
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Point-to-point Dijkstra that searches forward from the start over the adjacency and backward from the
+ * destination over {@link RoadNetwork#getReverseAdjacency()}, stopping once the two frontiers meet.
+ * Without a destination it falls back to a full single-source search so the distArray contract still holds.
+ */
+public final class BidirectionalDijkstraService implements PathfindingService {
+    private static final String ALGORITHM_NAME = "BidirectionalDijkstra";
+    private final PathfindingService singleSourceFallback = new BinaryHeapDijkstraService();
+
+    @Override
+    public PathResult findShortestPath(
+            RoadNetwork network, City src, City dst,
+            List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) {
+
+        if (dst == null) {
+            return singleSourceFallback.findShortestPath(network, src, null, ignorePois, useTimeout, timeoutMillis);
+        }
+
+        final long startTime = System.nanoTime();
+        final long deadline = useTimeout ? startTime + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
+        Integer srcIndexInteger = network.getCityIndex(src);
+        Integer dstIndexInteger = network.getCityIndex(dst);
+        if (srcIndexInteger == null || dstIndexInteger == null) {
+            return PathResult.empty(ALGORITHM_NAME);
+        }
+        int srcIndex = srcIndexInteger;
+        int dstIndex = dstIndexInteger;
+        if (srcIndex == dstIndex) {
+            return new PathResult(List.of(src), 0.0, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+
+        final int V = network.getNumberOfCities();
+        final CsrGraph forwardGraph = network.getAdjacency();
+        final CsrGraph backwardGraph = network.getReverseAdjacency();
+
+        double[] distForward = new double[V];
+        double[] distBackward = new double[V];
+        int[] prevForward = new int[V]; // predecessor on the path from src
+        int[] nextBackward = new int[V]; // successor on the path to dst
+        boolean[] settledForward = new boolean[V];
+        boolean[] settledBackward = new boolean[V];
+        Arrays.fill(distForward, Double.POSITIVE_INFINITY);
+        Arrays.fill(distBackward, Double.POSITIVE_INFINITY);
+        Arrays.fill(prevForward, -1);
+        Arrays.fill(nextBackward, -1);
+        IndexedMinHeap forwardHeap = new IndexedMinHeap(V);
+        IndexedMinHeap backwardHeap = new IndexedMinHeap(V);
+
+        distForward[srcIndex] = 0;
+        distBackward[dstIndex] = 0;
+        forwardHeap.insertOrDecrease(srcIndex, 0);
+        backwardHeap.insertOrDecrease(dstIndex, 0);
+
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        int steps = 0;
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            // Any path not yet seen is at least as long as the sum of both frontier minima.
+            if (forwardHeap.peekMinKey() + backwardHeap.peekMinKey() >= bestDistance) {
+                break;
+            }
+            // Expand the side with the smaller key, so both radii grow evenly and the stop test above fires early.
+            if (forwardHeap.peekMinKey() <= backwardHeap.peekMinKey()) {
+                int u = forwardHeap.pollMin();
+                settledForward[u] = true;
+                double du = distForward[u];
+                for (int e = forwardGraph.edgeStart(u); e < forwardGraph.edgeEnd(u); e++) {
+                    int v = forwardGraph.target(e);
+                    double candidate = du + forwardGraph.weight(e);
+                    if (!settledForward[v] && candidate < distForward[v]) {
+                        distForward[v] = candidate;
+                        prevForward[v] = u;
+                        forwardHeap.insertOrDecrease(v, candidate);
+                    }
+                    if (candidate + distBackward[v] < bestDistance) {
+                        bestDistance = candidate + distBackward[v];
+                        meetingNode = v;
+                    }
+                }
+            } else {
+                int u = backwardHeap.pollMin();
+                settledBackward[u] = true;
+                double du = distBackward[u];
+                for (int e = backwardGraph.edgeStart(u); e < backwardGraph.edgeEnd(u); e++) {
+                    int v = backwardGraph.target(e); // road v -> u
+                    double candidate = du + backwardGraph.weight(e);
+                    if (!settledBackward[v] && candidate < distBackward[v]) {
+                        distBackward[v] = candidate;
+                        nextBackward[v] = u;
+                        backwardHeap.insertOrDecrease(v, candidate);
+                    }
+                    if (candidate + distForward[v] < bestDistance) {
+                        bestDistance = candidate + distForward[v];
+                        meetingNode = v;
+                    }
+                }
+            }
+            if (useTimeout && (++steps & 0xFF) == 0 && System.nanoTime() > deadline) {
+                return PathResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTime) / 1_000_000.0);
+            }
+        }
+
+        final double duration = (System.nanoTime() - startTime) / 1_000_000.0;
+        if (meetingNode < 0) {
+            return new PathResult(List.of(), Double.POSITIVE_INFINITY, duration, false, ALGORITHM_NAME);
+        }
+        List<City> path = PathReconstructionHelper.reconstructPath(network, prevForward, srcIndex, meetingNode);
+        List<City> fullPath = new ArrayList<>(path);
+        for (int node = nextBackward[meetingNode]; node != -1; node = nextBackward[node]) {
+            fullPath.add(network.getCityByIndex(node));
+            if (node == dstIndex) {
+                break;
+            }
+        }
+        return new PathResult(fullPath, bestDistance, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+    }
+}
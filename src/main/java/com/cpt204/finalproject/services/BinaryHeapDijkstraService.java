@@ -0,0 +1,126 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.Attraction;
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @implNote O((V + E) log V) Dijkstra over the sparse CSR adjacency with an indexed binary heap.
+ * Stops as soon as {@code dst} is settled; with a null {@code dst} it settles every reachable node
+ * and returns the full distance array and predecessor tree, as DistanceCache expects.
+ */
+public final class BinaryHeapDijkstraService implements PathfindingService {
+    private static final String ALGORITHM_NAME = "BinaryHeapDijkstra";
+
+    @Override
+    public PathResult findShortestPath(
+            RoadNetwork network, City src, City dst,
+            List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) {
+
+        int srcIndex = network.indexOf(src);
+        int dstIndex = network.indexOf(dst);
+        if (srcIndex < 0 || (dst != null && dstIndex < 0)) {
+            return PathResult.empty(ALGORITHM_NAME);
+        }
+        return findShortestPath(network, srcIndex, dstIndex, useTimeout, timeoutMillis);
+    }
+
+    @Override
+    public PathResult findShortestPath(RoadNetwork network, int srcIndex, int dstIndex, boolean useTimeout, long timeoutMillis) {
+        final long startTime = System.nanoTime();
+        final long deadline = useTimeout ? startTime + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
+        final int V = network.getNumberOfCities();
+        final CsrGraph graph = network.getAdjacency();
+
+        double[] dist = new double[V];
+        int[] prev = new int[V];
+        boolean[] settled = new boolean[V];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+
+        dist[srcIndex] = 0;
+        heap.insertOrDecrease(srcIndex, 0);
+        int settledCount = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled[u] = true;
+            if (u == dstIndex) {
+                break; // Early exit: the destination distance is final
+            }
+            double du = dist[u];
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.target(e);
+                double candidate = du + graph.weight(e);
+                if (!settled[v] && candidate < dist[v]) {
+                    dist[v] = candidate;
+                    prev[v] = u;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+            // Timeout check (sampled to keep nanoTime off the hot path)
+            if (useTimeout && (++settledCount & 0xFF) == 0 && System.nanoTime() > deadline) {
+                return PathResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTime) / 1_000_000.0);
+            }
+        }
+
+        double finalDistance;
+        List<City> path = List.of();
+        double[] distArray;
+        int[] prevArray = null;
+        if (dstIndex >= 0) {
+            finalDistance = dist[dstIndex];
+            if (finalDistance != Double.POSITIVE_INFINITY) {
+                path = PathReconstructionHelper.reconstructPath(network, prev, srcIndex, dstIndex);
+            }
+            // After an early exit, entries of unsettled nodes are only upper bounds, so they are not exposed.
+            distArray = null;
+        } else {
+            finalDistance = Double.NaN; // No single target; the full dist[] array is the result
+            distArray = dist;
+            prevArray = prev; // Complete shortest-path tree, kept by DistanceCache for segment paths
+        }
+
+        final double duration = (System.nanoTime() - startTime) / 1_000_000.0;
+        return new PathResult(path, finalDistance, distArray, prevArray, duration, false, ALGORITHM_NAME);
+    }
+
+    /**
+     * Settles every node reachable from {@code source} in {@code graph} and fills the caller's arrays.
+     * Shared by preprocessing steps that need whole rows over either the forward or the reverse adjacency.
+     *
+     * @param graph The adjacency to search (forward or reverse).
+     * @param source The source node index.
+     * @param dist Output distances, length V; overwritten.
+     * @param prev Output predecessors, length V, or null if not needed; overwritten.
+     * @param heap A cleared heap with capacity V; left cleared on return.
+     */
+    static void computeAllDistances(CsrGraph graph, int source, double[] dist, int[] prev, IndexedMinHeap heap) {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        if (prev != null) {
+            Arrays.fill(prev, -1);
+        }
+        dist[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            double du = dist[u];
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.target(e);
+                double candidate = du + graph.weight(e);
+                if (candidate < dist[v]) { // settled nodes can never improve, so no visited check is needed
+                    dist[v] = candidate;
+                    if (prev != null) {
+                        prev[v] = u;
+                    }
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+    }
+}
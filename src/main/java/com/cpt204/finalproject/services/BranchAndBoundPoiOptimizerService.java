@@ -0,0 +1,362 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Implements PoiOptimizerService with a depth-first branch-and-bound search over the precomputed distance matrix.
+ * The incumbent starts as the best nearest-neighbour route, and a partial route is cut as soon as its length plus
+ * a lower bound for the rest reaches the incumbent. The bound is the largest of three admissible estimates over
+ * the unvisited POIs: every node must still leave once (cheapest outgoing edge), every node must still be entered
+ * once (cheapest incoming edge), and the rest of the route is a spanning path, so it is at least a minimum
+ * spanning tree over the remaining nodes. Exact like Held-Karp, but with memory linear in the number of POIs;
+ * on a timeout it returns the best route found so far.
+ */
+public class BranchAndBoundPoiOptimizerService implements PoiOptimizerService {
+
+    private static final String ALGORITHM_NAME = "Branch and Bound";
+    private final PathfindingService fallbackPathfinder;
+
+    public BranchAndBoundPoiOptimizerService(PathfindingService pathfindingServiceForNoPoiCase) {
+        this.fallbackPathfinder = pathfindingServiceForNoPoiCase;
+    }
+
+    /**
+     * Searches every leg a route can use once (start -> POI, POI -> POI, POI -> end) with the fallback pathfinder,
+     * then runs the branch and bound over that matrix, as the permutation optimizer does without a cache.
+     */
+    @Deprecated
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            RoadNetwork roadNetwork,
+            City startCity,
+            City endCity,
+            List<City> poisToVisit,
+            boolean useTimeout,
+            long timeoutMillis) {
+        long startTime = System.currentTimeMillis();
+        long deadline = useTimeout ? startTime + timeoutMillis : Long.MAX_VALUE;
+        if (this.fallbackPathfinder == null) {
+            throw new IllegalStateException("FallbackPathfinder is null, cannot search legs using the old API.");
+        }
+        if (poisToVisit == null || poisToVisit.isEmpty()) {
+            PathfindingService.PathResult directPathResult = fallbackPathfinder.findShortestPath(roadNetwork, startCity, endCity, Collections.emptyList(), useTimeout, timeoutMillis);
+            long endTime = System.currentTimeMillis();
+            if (directPathResult.isTimedOut()) {
+                return OptimizerResult.timedOut(ALGORITHM_NAME + " (Fallback)", endTime - startTime);
+            }
+            if (directPathResult.getTotalDistance() == Double.POSITIVE_INFINITY) {
+                return OptimizerResult.empty(ALGORITHM_NAME + " (Fallback)");
+            }
+            return new OptimizerResult(Collections.emptyList(), directPathResult.getTotalDistance(), endTime - startTime, false, ALGORITHM_NAME + " (Fallback)");
+        }
+
+        // Nodes are [start, POI 1..n, end], so each listed POI keeps its own row even if cities repeat.
+        // Legs no route can use (into the start, out of the end, start -> end) stay infinite.
+        int n = poisToVisit.size();
+        List<City> nodes = new ArrayList<>(n + 2);
+        nodes.add(startCity);
+        nodes.addAll(poisToVisit);
+        nodes.add(endCity);
+        double[][] legDistances = new double[n + 2][n + 2];
+        for (double[] row : legDistances) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        for (int from = 0; from <= n; from++) {
+            for (int to = 1; to <= n + 1; to++) {
+                if (from == to || (from == 0 && to == n + 1)) {
+                    continue;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    return OptimizerResult.timedOut(ALGORITHM_NAME, System.currentTimeMillis() - startTime);
+                }
+                PathfindingService.PathResult segmentResult = fallbackPathfinder.findShortestPath(roadNetwork, nodes.get(from), nodes.get(to), Collections.emptyList(), false, 0);
+                legDistances[from][to] = segmentResult.isTimedOut() ? Double.POSITIVE_INFINITY : segmentResult.getTotalDistance();
+            }
+        }
+        int[] poiIndices = new int[n];
+        for (int k = 0; k < n; k++) {
+            poiIndices[k] = k + 1;
+        }
+        long remaining = useTimeout ? Math.max(0, deadline - System.currentTimeMillis()) : timeoutMillis;
+        return findBestPoiOrder(0, n + 1, poiIndices, legDistances, nodes, useTimeout, remaining);
+    }
+
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            City startCity, City endCity, List<City> poisToVisit,
+            Set<City> S, double[][] shortestDistances, Map<City, Integer> nodeToIndexInS, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
+        Integer startIndex = nodeToIndexInS.get(startCity);
+        Integer endIndex = nodeToIndexInS.get(endCity);
+        if (startIndex == null || endIndex == null) {
+            return OptimizerResult.empty(ALGORITHM_NAME + " (Error: Start/End not in S)");
+        }
+        int[] poiIndices = new int[poisToVisit == null ? 0 : poisToVisit.size()];
+        for (int k = 0; k < poiIndices.length; k++) {
+            City poi = poisToVisit.get(k);
+            Integer poiIndex = nodeToIndexInS.get(poi);
+            if (poiIndex == null) {
+                System.err.println("Error: POI " + poi.getName() + " not found in nodeToIndexInS map.");
+                return OptimizerResult.empty(ALGORITHM_NAME + " (No path found)");
+            }
+            poiIndices[k] = poiIndex;
+        }
+        return findBestPoiOrder(startIndex, endIndex, poiIndices, shortestDistances, orderedNodesInS, useTimeout, timeoutMillis);
+    }
+
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            int startIndexInS, int endIndexInS, int[] poiIndicesInS,
+            double[][] shortestDistances, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
+
+        final long startTimeNanos = System.nanoTime();
+        final long deadlineNanos = useTimeout ? startTimeNanos + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
+
+        // Local ids: 0 = start, 1..K = POIs (start/end excluded), K + 1 = end
+        int[] purePois = new int[poiIndicesInS.length];
+        int K = 0;
+        for (int poiIndex : poiIndicesInS) {
+            if (poiIndex != startIndexInS && poiIndex != endIndexInS) {
+                purePois[K++] = poiIndex;
+            }
+        }
+        if (K == 0) {
+            double dist = shortestDistances[startIndexInS][endIndexInS];
+            final double durationMillis = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            return new OptimizerResult(Collections.emptyList(), dist, durationMillis, false, ALGORITHM_NAME + " (0 POIs)");
+        }
+        final int width = K + 2;
+        double[] legs = new double[width * width];
+        for (int a = 0; a < width; a++) {
+            int rowInS = a == 0 ? startIndexInS : a == K + 1 ? endIndexInS : purePois[a - 1];
+            for (int b = 0; b < width; b++) {
+                int columnInS = b == 0 ? startIndexInS : b == K + 1 ? endIndexInS : purePois[b - 1];
+                legs[a * width + b] = a == b ? Double.POSITIVE_INFINITY : shortestDistances[rowInS][columnInS];
+            }
+        }
+
+        Search search = new Search(legs, K, deadlineNanos);
+        search.seedWithNearestNeighbour();
+        search.run();
+
+        final double durationMillis = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+        if (search.timedOut) {
+            System.out.println("Warning: Branch-and-bound POI optimization timed out after " + durationMillis + " ms.");
+        }
+        if (search.bestDistance == Double.POSITIVE_INFINITY) {
+            if (search.timedOut) {
+                return OptimizerResult.timedOut(ALGORITHM_NAME, durationMillis);
+            }
+            System.err.println("Branch and Bound: Could not find a path visiting all POIs and reaching the end city.");
+            return OptimizerResult.empty(ALGORITHM_NAME + " (No path found)");
+        }
+        List<City> bestOrder = new ArrayList<>(K);
+        for (int localId : search.bestRoute) {
+            bestOrder.add(orderedNodesInS.get(purePois[localId - 1]));
+        }
+        // Even if timed out, return the best incumbent found so far
+        return new OptimizerResult(bestOrder, search.bestDistance, durationMillis, search.timedOut, ALGORITHM_NAME);
+    }
+
+    /**
+     * State of one search. Legs are a flat (K + 2)^2 table over local ids with infinite self legs.
+     */
+    private static final class Search {
+        private final double[] legs;
+        private final double[] undirected; // min of both directions, for the spanning-tree bound
+        private final int K;
+        private final int width;
+        private final int endId;
+        private final long deadlineNanos;
+        private final boolean[] visited;
+        private final int[] route;
+        private final int[][] candidatesByDistance; // candidatesByDistance[u] = POIs sorted by legs[u][*]
+        private final double[] primKey; // scratch for Prim's algorithm
+        private final boolean[] inTree;
+        private long expanded;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int[] bestRoute;
+        boolean timedOut;
+
+        Search(double[] legs, int K, long deadlineNanos) {
+            this.legs = legs;
+            this.K = K;
+            this.width = K + 2;
+            this.endId = K + 1;
+            this.deadlineNanos = deadlineNanos;
+            this.visited = new boolean[width];
+            this.route = new int[K];
+            this.primKey = new double[width];
+            this.inTree = new boolean[width];
+            undirected = new double[width * width];
+            for (int a = 0; a < width; a++) {
+                for (int b = 0; b < width; b++) {
+                    undirected[a * width + b] = Math.min(legs[a * width + b], legs[b * width + a]);
+                }
+            }
+            candidatesByDistance = new int[K + 1][];
+            for (int u = 0; u <= K; u++) {
+                final int row = u * width;
+                candidatesByDistance[u] = IntStream.rangeClosed(1, K)
+                        .boxed()
+                        .sorted((x, y) -> Double.compare(legs[row + x], legs[row + y]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+        }
+
+        /** Greedy routes that always take the nearest unvisited POI, one for each choice of first POI. */
+        void seedWithNearestNeighbour() {
+            int[] greedy = new int[K];
+            boolean[] used = new boolean[width];
+            for (int first = 1; first <= K; first++) {
+                Arrays.fill(used, false);
+                used[first] = true;
+                greedy[0] = first;
+                double length = legs[first];
+                int current = first;
+                for (int position = 1; position < K && length < Double.POSITIVE_INFINITY; position++) {
+                    int next = -1;
+                    for (int candidate : candidatesByDistance[current]) {
+                        if (!used[candidate]) {
+                            next = candidate;
+                            break;
+                        }
+                    }
+                    used[next] = true;
+                    greedy[position] = next;
+                    length += legs[current * width + next];
+                    current = next;
+                }
+                length += legs[current * width + endId];
+                if (length < bestDistance) {
+                    bestDistance = length;
+                    bestRoute = greedy.clone();
+                }
+            }
+        }
+
+        void run() {
+            visited[0] = true;
+            expand(0, 0, 0.0);
+        }
+
+        private void expand(int depth, int current, double partial) {
+            if (depth == K) {
+                double total = partial + legs[current * width + endId];
+                if (total < bestDistance) {
+                    bestDistance = total;
+                    bestRoute = route.clone();
+                }
+                return;
+            }
+            if ((++expanded & 0xFF) == 0 && System.nanoTime() > deadlineNanos) {
+                timedOut = true;
+            }
+            if (timedOut || partial + lowerBound(current) >= bestDistance) {
+                return;
+            }
+            // Nearest POIs first, so good routes are found early and tighten the incumbent
+            for (int next : candidatesByDistance[current]) {
+                if (visited[next]) {
+                    continue;
+                }
+                double cost = partial + legs[current * width + next];
+                if (cost >= bestDistance) {
+                    break; // candidates are sorted, so every later one is at least as long
+                }
+                visited[next] = true;
+                route[depth] = next;
+                expand(depth + 1, next, cost);
+                visited[next] = false;
+                if (timedOut) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Lower bound on the rest of the route from {@code current} through every unvisited POI to the end.
+         */
+        private double lowerBound(int current) {
+            double cheapestFromCurrent = Double.POSITIVE_INFINITY;
+            double cheapestToEnd = Double.POSITIVE_INFINITY;
+            double leaving = 0; // each unvisited POI leaves once, to another unvisited POI or the end
+            double entering = 0; // each unvisited POI is entered once, from current or another unvisited POI
+            for (int r = 1; r <= K; r++) {
+                if (visited[r]) {
+                    continue;
+                }
+                cheapestFromCurrent = Math.min(cheapestFromCurrent, legs[current * width + r]);
+                cheapestToEnd = Math.min(cheapestToEnd, legs[r * width + endId]);
+                double out = legs[r * width + endId];
+                double in = legs[current * width + r];
+                for (int x = 1; x <= K; x++) {
+                    if (!visited[x]) {
+                        out = Math.min(out, legs[r * width + x]);
+                        in = Math.min(in, legs[x * width + r]);
+                    }
+                }
+                leaving += out;
+                entering += in;
+            }
+            double bound = Math.max(cheapestFromCurrent + leaving, entering + cheapestToEnd);
+            if (bound == Double.POSITIVE_INFINITY) {
+                return bound;
+            }
+            return Math.max(bound, spanningTreeBound(current));
+        }
+
+        /** Prim's algorithm over current, the unvisited POIs and the end, on the undirected leg lengths. */
+        private double spanningTreeBound(int current) {
+            int remaining = 0;
+            for (int node = 0; node < width; node++) {
+                boolean member = node == current || node == endId || !visited[node];
+                inTree[node] = !member; // non-members are treated as already taken
+                primKey[node] = Double.POSITIVE_INFINITY;
+                if (member) {
+                    remaining++;
+                }
+            }
+            double total = 0;
+            int node = current;
+            inTree[node] = true;
+            remaining--;
+            while (remaining > 0) {
+                int next = -1;
+                double nextKey = Double.POSITIVE_INFINITY;
+                int row = node * width;
+                for (int other = 0; other < width; other++) {
+                    if (inTree[other]) {
+                        continue;
+                    }
+                    if (undirected[row + other] < primKey[other]) {
+                        primKey[other] = undirected[row + other];
+                    }
+                    if (next < 0 || primKey[other] < nextKey) {
+                        next = other;
+                        nextKey = primKey[other];
+                    }
+                }
+                if (nextKey == Double.POSITIVE_INFINITY) {
+                    return Double.POSITIVE_INFINITY; // the remaining nodes cannot all be connected
+                }
+                total += nextKey;
+                inTree[next] = true;
+                node = next;
+                remaining--;
+            }
+            return total;
+        }
+    }
+}
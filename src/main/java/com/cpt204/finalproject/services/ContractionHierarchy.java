@@ -0,0 +1,423 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Contraction Hierarchies preprocessing over a {@link RoadNetwork}.
+ * Cities are contracted one by one in order of their edge difference (shortcuts added minus edges removed,
+ * plus the number of already contracted neighbours). Whenever the only shortest path between two remaining
+ * neighbours runs through the contracted city, a shortcut is inserted that remembers that city as its middle node.
+ *
+ * The result is stored as two static graphs in flat primitive arrays:
+ * the upward graph (edges u -> v with rank[v] > rank[u], stored at u) and the downward graph
+ * (edges u -> v with rank[u] > rank[v], stored at v and pointing back to u), which is what a
+ * backward search from the destination walks.
+ */
+public final class ContractionHierarchy {
+    /** Witness searches give up after settling this many nodes and conservatively add the shortcut. */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    /** Cheaper limit used while only estimating priorities. */
+    private static final int SIMULATION_SETTLE_LIMIT = 100;
+
+    private final RoadNetwork network;
+    private final int[] rank;
+    private final int[] upStart, upEnd, upTargets, upMiddles;
+    private final double[] upWeights;
+    private final int[] downStart, downEnd, downTargets, downMiddles;
+    private final double[] downWeights;
+    private final int shortcutCount;
+
+    private ContractionHierarchy(RoadNetwork network, int[] rank,
+                                 int[] upStart, int[] upEnd, int[] upTargets, double[] upWeights, int[] upMiddles,
+                                 int[] downStart, int[] downEnd, int[] downTargets, double[] downWeights, int[] downMiddles,
+                                 int shortcutCount) {
+        this.network = network;
+        this.rank = rank;
+        this.upStart = upStart;
+        this.upEnd = upEnd;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downStart = downStart;
+        this.downEnd = downEnd;
+        this.downTargets = downTargets;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+        this.shortcutCount = shortcutCount;
+    }
+
+    /**
+     * Contracts every city of the network. This may take seconds on large networks; queries afterwards are cheap.
+     * @param network The road network to preprocess.
+     * @return The hierarchy for {@code network}.
+     */
+    public static ContractionHierarchy build(RoadNetwork network) {
+        return new Builder(network).build();
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return The number of shortcut edges added during contraction.
+     */
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * @param city A city index.
+     * @return The contraction rank of that city (0 = contracted first).
+     */
+    public int rank(int city) {
+        return rank[city];
+    }
+
+    int upStart(int u) { return upStart[u]; }
+    int upEnd(int u) { return upEnd[u]; }
+    int upTarget(int e) { return upTargets[e]; }
+    double upWeight(int e) { return upWeights[e]; }
+    int upMiddle(int e) { return upMiddles[e]; }
+
+    int downStart(int v) { return downStart[v]; }
+    int downEnd(int v) { return downEnd[v]; }
+    int downTarget(int e) { return downTargets[e]; }
+    double downWeight(int e) { return downWeights[e]; }
+    int downMiddle(int e) { return downMiddles[e]; }
+
+    /**
+     * Finds the middle node of the hierarchy edge from -> to, or -1 if it is an original road.
+     */
+    private int middleOf(int from, int to) {
+        if (rank[from] < rank[to]) {
+            for (int e = upStart[from]; e < upEnd[from]; e++) {
+                if (upTargets[e] == to) return upMiddles[e];
+            }
+        } else {
+            for (int e = downStart[to]; e < downEnd[to]; e++) {
+                if (downTargets[e] == from) return downMiddles[e];
+            }
+        }
+        throw new IllegalStateException("Hierarchy edge " + from + " -> " + to + " not found while unpacking.");
+    }
+
+    /**
+     * Recursively expands the hierarchy edge from -> to (with the given middle node) into original roads
+     * and appends every city after {@code from}, up to and including {@code to}, to {@code path}.
+     */
+    void appendUnpacked(int from, int to, int middle, List<City> path) {
+        // Explicit stack of (from, to, middle) triples; the left half is always processed first.
+        int[] stack = new int[48];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        stack[top++] = middle;
+        while (top > 0) {
+            int m = stack[--top];
+            int b = stack[--top];
+            int a = stack[--top];
+            if (m < 0) {
+                path.add(network.getCityByIndex(b));
+                continue;
+            }
+            if (top + 6 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = m;
+            stack[top++] = b;
+            stack[top++] = middleOf(m, b);
+            stack[top++] = a;
+            stack[top++] = m;
+            stack[top++] = middleOf(a, m);
+        }
+    }
+
+    /**
+     * Mutable adjacency used only while contracting.
+     */
+    private static final class EdgeList {
+        int[] nodes = new int[4];
+        double[] weights = new double[4];
+        int[] middles = new int[4];
+        int size;
+
+        int indexOf(int node) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) return i;
+            }
+            return -1;
+        }
+
+        /** Adds the edge or lowers the weight of an existing edge to the same node. */
+        void addOrImprove(int node, double weight, int middle) {
+            int i = indexOf(node);
+            if (i >= 0) {
+                if (weight < weights[i]) {
+                    weights[i] = weight;
+                    middles[i] = middle;
+                }
+                return;
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                middles = Arrays.copyOf(middles, size * 2);
+            }
+            nodes[size] = node;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+
+        void remove(int node) {
+            int i = indexOf(node);
+            if (i >= 0) {
+                size--;
+                nodes[i] = nodes[size];
+                weights[i] = weights[size];
+                middles[i] = middles[size];
+            }
+        }
+    }
+
+    private static final class Builder {
+        private final RoadNetwork network;
+        private final int V;
+        private final EdgeList[] out;
+        private final EdgeList[] in;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        // Witness search scratch space, reset through the touched list
+        private final double[] witnessDist;
+        private final int[] touched;
+        private int touchedCount;
+        private final boolean[] isWitnessTarget;
+        private final IndexedMinHeap witnessHeap;
+
+        // Static graph assembled in contraction order
+        private int[] upTargets, upMiddles, downTargets, downMiddles;
+        private double[] upWeights, downWeights;
+        private int upCount, downCount, shortcutCount;
+
+        Builder(RoadNetwork network) {
+            this.network = network;
+            this.V = network.getNumberOfCities();
+            this.out = new EdgeList[V];
+            this.in = new EdgeList[V];
+            for (int v = 0; v < V; v++) {
+                out[v] = new EdgeList();
+                in[v] = new EdgeList();
+            }
+            CsrGraph graph = network.getAdjacency();
+            for (int u = 0; u < V; u++) {
+                for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                    out[u].addOrImprove(graph.target(e), graph.weight(e), -1);
+                    in[graph.target(e)].addOrImprove(u, graph.weight(e), -1);
+                }
+            }
+            this.contracted = new boolean[V];
+            this.contractedNeighbours = new int[V];
+            this.witnessDist = new double[V];
+            Arrays.fill(witnessDist, Double.POSITIVE_INFINITY);
+            this.touched = new int[V];
+            this.isWitnessTarget = new boolean[V];
+            this.witnessHeap = new IndexedMinHeap(V);
+            int initialCapacity = Math.max(16, graph.getNumberOfEdges());
+            this.upTargets = new int[initialCapacity];
+            this.upMiddles = new int[initialCapacity];
+            this.upWeights = new double[initialCapacity];
+            this.downTargets = new int[initialCapacity];
+            this.downMiddles = new int[initialCapacity];
+            this.downWeights = new double[initialCapacity];
+        }
+
+        ContractionHierarchy build() {
+            IndexedMinHeap queue = new IndexedMinHeap(Math.max(V, 1));
+            for (int v = 0; v < V; v++) {
+                queue.insertOrDecrease(v, priority(v));
+            }
+            int[] rank = new int[V];
+            int[] upStart = new int[V], upEnd = new int[V], downStart = new int[V], downEnd = new int[V];
+            int nextRank = 0;
+            while (!queue.isEmpty()) {
+                int x = queue.pollMin();
+                // Lazy update: priorities of untouched nodes may be stale, so re-check before contracting.
+                double current = priority(x);
+                if (!queue.isEmpty() && current > queue.peekMinKey()) {
+                    queue.insertOrDecrease(x, current);
+                    continue;
+                }
+                rank[x] = nextRank++;
+                processShortcuts(x, true);
+
+                upStart[x] = upCount;
+                EdgeList outX = out[x];
+                for (int i = 0; i < outX.size; i++) {
+                    appendUp(outX.nodes[i], outX.weights[i], outX.middles[i]);
+                }
+                upEnd[x] = upCount;
+                downStart[x] = downCount;
+                EdgeList inX = in[x];
+                for (int i = 0; i < inX.size; i++) {
+                    appendDown(inX.nodes[i], inX.weights[i], inX.middles[i]);
+                }
+                downEnd[x] = downCount;
+
+                contracted[x] = true;
+                for (int i = 0; i < outX.size; i++) {
+                    int w = outX.nodes[i];
+                    in[w].remove(x);
+                    contractedNeighbours[w]++;
+                }
+                for (int i = 0; i < inX.size; i++) {
+                    int u = inX.nodes[i];
+                    out[u].remove(x);
+                    contractedNeighbours[u]++;
+                }
+                // Neighbour priorities changed the most; refresh them eagerly.
+                for (int i = 0; i < outX.size; i++) {
+                    queue.update(outX.nodes[i], priority(outX.nodes[i]));
+                }
+                for (int i = 0; i < inX.size; i++) {
+                    queue.update(inX.nodes[i], priority(inX.nodes[i]));
+                }
+                out[x] = null;
+                in[x] = null;
+            }
+            return new ContractionHierarchy(network, rank,
+                    upStart, upEnd, Arrays.copyOf(upTargets, upCount), Arrays.copyOf(upWeights, upCount), Arrays.copyOf(upMiddles, upCount),
+                    downStart, downEnd, Arrays.copyOf(downTargets, downCount), Arrays.copyOf(downWeights, downCount), Arrays.copyOf(downMiddles, downCount),
+                    shortcutCount);
+        }
+
+        private double priority(int x) {
+            int shortcuts = processShortcuts(x, false);
+            return shortcuts - out[x].size - in[x].size + contractedNeighbours[x];
+        }
+
+        /**
+         * Counts (and if {@code add} is set, inserts) the shortcuts needed to contract x.
+         */
+        private int processShortcuts(int x, boolean add) {
+            EdgeList inX = in[x];
+            EdgeList outX = out[x];
+            int settleLimit = add ? WITNESS_SETTLE_LIMIT : SIMULATION_SETTLE_LIMIT;
+            int shortcuts = 0;
+            for (int i = 0; i < inX.size; i++) {
+                int u = inX.nodes[i];
+                double toX = inX.weights[i];
+                double maxVia = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < outX.size; j++) {
+                    if (outX.nodes[j] != u) {
+                        maxVia = Math.max(maxVia, toX + outX.weights[j]);
+                    }
+                }
+                if (maxVia == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                int targets = 0;
+                for (int j = 0; j < outX.size; j++) {
+                    int w = outX.nodes[j];
+                    if (w != u && !isWitnessTarget[w]) {
+                        isWitnessTarget[w] = true;
+                        targets++;
+                    }
+                }
+                witnessSearch(u, x, maxVia, settleLimit, targets);
+                for (int j = 0; j < outX.size; j++) {
+                    isWitnessTarget[outX.nodes[j]] = false;
+                }
+                for (int j = 0; j < outX.size; j++) {
+                    int w = outX.nodes[j];
+                    if (w == u) continue;
+                    double via = toX + outX.weights[j];
+                    if (witnessDist[w] > via) {
+                        shortcuts++;
+                        if (add) {
+                            out[u].addOrImprove(w, via, x);
+                            in[w].addOrImprove(u, via, x);
+                        }
+                    }
+                }
+                resetWitness();
+            }
+            if (add) {
+                shortcutCount += shortcuts;
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Bounded Dijkstra from source over the remaining graph, skipping {@code excluded}.
+         * Stops early once every marked target has been settled.
+         */
+        private void witnessSearch(int source, int excluded, double maxDistance, int settleLimit, int targets) {
+            witnessDist[source] = 0;
+            touched[touchedCount++] = source;
+            witnessHeap.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && targets > 0) {
+                if (witnessHeap.peekMinKey() > maxDistance || settled++ >= settleLimit) {
+                    break;
+                }
+                int u = witnessHeap.pollMin();
+                if (isWitnessTarget[u]) {
+                    targets--;
+                }
+                EdgeList outU = out[u];
+                double du = witnessDist[u];
+                for (int i = 0; i < outU.size; i++) {
+                    int v = outU.nodes[i];
+                    if (v == excluded) continue;
+                    double candidate = du + outU.weights[i];
+                    if (candidate < witnessDist[v]) {
+                        if (witnessDist[v] == Double.POSITIVE_INFINITY) {
+                            touched[touchedCount++] = v;
+                        }
+                        witnessDist[v] = candidate;
+                        witnessHeap.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            witnessHeap.clear();
+        }
+
+        private void resetWitness() {
+            for (int i = 0; i < touchedCount; i++) {
+                witnessDist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+            touchedCount = 0;
+        }
+
+        private void appendUp(int target, double weight, int middle) {
+            if (upCount == upTargets.length) {
+                upTargets = Arrays.copyOf(upTargets, upCount * 2);
+                upWeights = Arrays.copyOf(upWeights, upCount * 2);
+                upMiddles = Arrays.copyOf(upMiddles, upCount * 2);
+            }
+            upTargets[upCount] = target;
+            upWeights[upCount] = weight;
+            upMiddles[upCount] = middle;
+            upCount++;
+        }
+
+        private void appendDown(int source, double weight, int middle) {
+            if (downCount == downTargets.length) {
+                downTargets = Arrays.copyOf(downTargets, downCount * 2);
+                downWeights = Arrays.copyOf(downWeights, downCount * 2);
+                downMiddles = Arrays.copyOf(downMiddles, downCount * 2);
+            }
+            downTargets[downCount] = source;
+            downWeights[downCount] = weight;
+            downMiddles[downCount] = middle;
+            downCount++;
+        }
+    }
+}
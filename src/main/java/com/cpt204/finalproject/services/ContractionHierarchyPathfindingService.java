@@ -0,0 +1,370 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.Attraction;
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.RoadNetworkListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Point-to-point queries on a {@link ContractionHierarchy}: a forward search from the start that only
+ * follows upward edges and a backward search from the destination that only follows downward edges in reverse.
+ * The best meeting node gives the distance, and shortcuts on both halves are unpacked into the full city path.
+ * The hierarchy is built lazily on the first query for a network unless one is supplied up front.
+ * Calls without a destination fall back to a full single-source search for the distArray contract.
+ * As a {@link DistanceTableService} it fills many-to-many tables with bucket-based upward searches.
+ * After a road update the hierarchy is contracted again on a background thread. Until it is ready, queries on
+ * the updated network use plain searches, and queries on the previous version keep using the old hierarchy.
+ */
+public final class ContractionHierarchyPathfindingService implements PathfindingService, DistanceTableService, RoadNetworkListener {
+    private static final String ALGORITHM_NAME = "ContractionHierarchies";
+    /** Contracts updated networks one at a time; daemon, so a pending rebuild never keeps the application alive. */
+    private static final ExecutorService REBUILD_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contraction-hierarchy-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PathfindingService singleSourceFallback = new BinaryHeapDijkstraService();
+    private final PathfindingService pointToPointFallback = new BidirectionalDijkstraService();
+    private volatile ContractionHierarchy hierarchy;
+    private volatile RoadNetwork rebuildTarget; // newest network being contracted in the background, or null
+
+    public ContractionHierarchyPathfindingService() {
+    }
+
+    /**
+     * @param hierarchy A hierarchy that was already preprocessed; queries on other networks build their own.
+     */
+    public ContractionHierarchyPathfindingService(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Gets the hierarchy for the network, contracting it on first use. Unlike queries, this blocks while
+     * the network's hierarchy is being rebuilt after a road update, by contracting it on the calling thread.
+     * @param network The road network being queried.
+     * @return The contraction hierarchy for that network.
+     */
+    public ContractionHierarchy getHierarchy(RoadNetwork network) {
+        ContractionHierarchy ch = hierarchy;
+        if (ch == null || ch.getNetwork() != network) {
+            synchronized (this) {
+                ch = hierarchy;
+                if (ch == null || ch.getNetwork() != network) {
+                    ch = ContractionHierarchy.build(network);
+                    hierarchy = ch;
+                }
+            }
+        }
+        return ch;
+    }
+
+    /**
+     * @return The hierarchy to answer a query on the network with, or null if a plain search should answer it:
+     * while that version is still being contracted in the background, or if it is older than the current hierarchy.
+     */
+    private ContractionHierarchy hierarchyForQuery(RoadNetwork network) {
+        ContractionHierarchy ch = hierarchy;
+        if (ch != null && ch.getNetwork() == network) {
+            return ch;
+        }
+        RoadNetwork target = rebuildTarget;
+        if ((target != null && network.getVersion() <= target.getVersion())
+                || (ch != null && network.getVersion() < ch.getNetwork().getVersion())) {
+            return null;
+        }
+        return getHierarchy(network);
+    }
+
+    /**
+     * Starts contracting the updated network in the background. The current hierarchy keeps answering queries on
+     * its own version until the new one replaces it; updates that arrive meanwhile are coalesced into one rebuild
+     * of the newest version. A service that has not built a hierarchy yet ignores updates.
+     * @param change The road update.
+     */
+    @Override
+    public void roadChanged(RoadChange change) {
+        RoadNetwork target = change.getCurrent();
+        synchronized (this) {
+            if (hierarchy == null && rebuildTarget == null) {
+                return;
+            }
+            rebuildTarget = target;
+        }
+        REBUILD_EXECUTOR.execute(() -> rebuild(target));
+    }
+
+    private void rebuild(RoadNetwork target) {
+        if (rebuildTarget != target) {
+            return; // a newer update replaced this one; its own task is queued behind this one
+        }
+        ContractionHierarchy ch = hierarchy;
+        if (ch == null || ch.getNetwork() != target) {
+            ch = ContractionHierarchy.build(target);
+        }
+        synchronized (this) {
+            if (rebuildTarget == target) {
+                hierarchy = ch;
+                rebuildTarget = null;
+            }
+        }
+    }
+
+    @Override
+    public PathResult findShortestPath(
+            RoadNetwork network, City src, City dst,
+            List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) {
+
+        if (dst == null) {
+            return singleSourceFallback.findShortestPath(network, src, null, ignorePois, useTimeout, timeoutMillis);
+        }
+
+        Integer srcIndexInteger = network.getCityIndex(src);
+        Integer dstIndexInteger = network.getCityIndex(dst);
+        if (srcIndexInteger == null || dstIndexInteger == null) {
+            return PathResult.empty(ALGORITHM_NAME);
+        }
+        final ContractionHierarchy ch = hierarchyForQuery(network); // preprocessing is not counted against the query timeout
+        if (ch == null) {
+            return pointToPointFallback.findShortestPath(network, src, dst, ignorePois, useTimeout, timeoutMillis);
+        }
+        final long startTime = System.nanoTime();
+        final long deadline = useTimeout ? startTime + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
+        int srcIndex = srcIndexInteger;
+        int dstIndex = dstIndexInteger;
+        if (srcIndex == dstIndex) {
+            return new PathResult(List.of(src), 0.0, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+
+        // Per-thread scratch arrays: only the nodes a query touches are reset, so a query never pays O(V).
+        final QueryState state = queryState(network.getNumberOfCities());
+        final double[] distForward = state.distForward;
+        final double[] distBackward = state.distBackward;
+        final int[] prevForward = state.prevForward;
+        final int[] prevForwardMiddle = state.prevForwardMiddle;
+        final int[] nextBackward = state.nextBackward;
+        final int[] nextBackwardMiddle = state.nextBackwardMiddle;
+        final IndexedMinHeap forwardHeap = state.forwardHeap;
+        final IndexedMinHeap backwardHeap = state.backwardHeap;
+        try {
+            state.touch(srcIndex);
+            state.touch(dstIndex);
+            distForward[srcIndex] = 0;
+            distBackward[dstIndex] = 0;
+            forwardHeap.insertOrDecrease(srcIndex, 0);
+            backwardHeap.insertOrDecrease(dstIndex, 0);
+            return search(network, ch, src, srcIndex, dstIndex, state, startTime, useTimeout, deadline);
+        } finally {
+            state.reset();
+        }
+    }
+
+    @Override
+    public double[][] computeDistanceTable(RoadNetwork network, List<City> sources, List<City> targets) {
+        final ContractionHierarchy ch = hierarchyForQuery(network);
+        int[] sourceIndices = resolveIndices(network, sources);
+        int[] targetIndices = resolveIndices(network, targets);
+        double[][] table = new double[sources.size()][targets.size()];
+        if (sourceIndices == null || targetIndices == null) {
+            for (double[] row : table) {
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+            }
+            return table;
+        }
+        if (ch != null) {
+            return ManyToManyBucketSearch.compute(ch, sourceIndices, targetIndices);
+        }
+        // No hierarchy for this version yet: one full search per source
+        for (int i = 0; i < sourceIndices.length; i++) {
+            double[] row = singleSourceFallback.findShortestPath(network, sourceIndices[i], -1, false, 0).getDistArray();
+            for (int j = 0; j < targetIndices.length; j++) {
+                table[i][j] = row == null ? Double.POSITIVE_INFINITY : row[targetIndices[j]];
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return The city indices, or null if a city is not in the network.
+     */
+    private static int[] resolveIndices(RoadNetwork network, List<City> cities) {
+        int[] indices = new int[cities.size()];
+        for (int i = 0; i < indices.length; i++) {
+            Integer index = network.getCityIndex(cities.get(i));
+            if (index == null) {
+                System.err.println("Error: City " + cities.get(i).getName() + " not found in network index during table computation.");
+                return null;
+            }
+            indices[i] = index;
+        }
+        return indices;
+    }
+
+    private PathResult search(RoadNetwork network, ContractionHierarchy ch, City src, int srcIndex, int dstIndex,
+                              QueryState state, long startTime, boolean useTimeout, long deadline) {
+        final double[] distForward = state.distForward;
+        final double[] distBackward = state.distBackward;
+        final int[] prevForward = state.prevForward;
+        final int[] prevForwardMiddle = state.prevForwardMiddle;
+        final int[] nextBackward = state.nextBackward;
+        final int[] nextBackwardMiddle = state.nextBackwardMiddle;
+        final IndexedMinHeap forwardHeap = state.forwardHeap;
+        final IndexedMinHeap backwardHeap = state.backwardHeap;
+
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        int steps = 0;
+
+        while (!forwardHeap.isEmpty() || !backwardHeap.isEmpty()) {
+            boolean forward = !forwardHeap.isEmpty()
+                    && (backwardHeap.isEmpty() || forwardHeap.peekMinKey() <= backwardHeap.peekMinKey());
+            IndexedMinHeap heap = forward ? forwardHeap : backwardHeap;
+            // Upward searches cannot use the sum-of-minima criterion; each side stops once its own minimum
+            // reaches the best connection found so far.
+            if (heap.peekMinKey() >= bestDistance) {
+                heap.clear();
+                continue;
+            }
+            int u = heap.pollMin();
+            if (forward) {
+                double du = distForward[u];
+                if (du + distBackward[u] < bestDistance) {
+                    bestDistance = du + distBackward[u];
+                    meetingNode = u;
+                }
+                for (int e = ch.upStart(u); e < ch.upEnd(u); e++) {
+                    int v = ch.upTarget(e);
+                    double candidate = du + ch.upWeight(e);
+                    if (candidate < distForward[v]) {
+                        state.touch(v);
+                        distForward[v] = candidate;
+                        prevForward[v] = u;
+                        prevForwardMiddle[v] = ch.upMiddle(e);
+                        forwardHeap.insertOrDecrease(v, candidate);
+                    }
+                }
+            } else {
+                double du = distBackward[u];
+                if (du + distForward[u] < bestDistance) {
+                    bestDistance = du + distForward[u];
+                    meetingNode = u;
+                }
+                for (int e = ch.downStart(u); e < ch.downEnd(u); e++) {
+                    int v = ch.downTarget(e); // hierarchy edge v -> u
+                    double candidate = du + ch.downWeight(e);
+                    if (candidate < distBackward[v]) {
+                        state.touch(v);
+                        distBackward[v] = candidate;
+                        nextBackward[v] = u;
+                        nextBackwardMiddle[v] = ch.downMiddle(e);
+                        backwardHeap.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            if (useTimeout && (++steps & 0xFF) == 0 && System.nanoTime() > deadline) {
+                return PathResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTime) / 1_000_000.0);
+            }
+        }
+
+        if (meetingNode < 0) {
+            return new PathResult(List.of(), Double.POSITIVE_INFINITY, (System.nanoTime() - startTime) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+
+        // Upward half: collect the hierarchy nodes from the meeting node back to src, then unpack in order.
+        int upLength = 0;
+        int[] upNodes = new int[16];
+        for (int node = meetingNode; node != -1; node = prevForward[node]) {
+            if (upLength == upNodes.length) {
+                upNodes = Arrays.copyOf(upNodes, upLength * 2);
+            }
+            upNodes[upLength++] = node;
+        }
+        List<City> path = new ArrayList<>();
+        path.add(src);
+        for (int i = upLength - 1; i > 0; i--) {
+            int to = upNodes[i - 1];
+            ch.appendUnpacked(upNodes[i], to, prevForwardMiddle[to], path);
+        }
+        for (int node = meetingNode; node != dstIndex; node = nextBackward[node]) {
+            ch.appendUnpacked(node, nextBackward[node], nextBackwardMiddle[node], path);
+        }
+
+        final double duration = (System.nanoTime() - startTime) / 1_000_000.0;
+        return new PathResult(path, bestDistance, duration, false, ALGORITHM_NAME);
+    }
+
+    private final ThreadLocal<QueryState> queryStates = new ThreadLocal<>();
+
+    private QueryState queryState(int numCities) {
+        QueryState state = queryStates.get();
+        if (state == null || state.distForward.length != numCities) {
+            state = new QueryState(numCities);
+            queryStates.set(state);
+        }
+        return state;
+    }
+
+    /**
+     * Reusable search arrays for one thread. Entries are kept at their "unvisited" values between queries.
+     */
+    private static final class QueryState {
+        final double[] distForward;
+        final double[] distBackward;
+        final int[] prevForward;
+        final int[] prevForwardMiddle;
+        final int[] nextBackward;
+        final int[] nextBackwardMiddle;
+        final IndexedMinHeap forwardHeap;
+        final IndexedMinHeap backwardHeap;
+        private final boolean[] touched;
+        private int[] touchedNodes = new int[64];
+        private int touchedCount;
+
+        QueryState(int numCities) {
+            distForward = new double[numCities];
+            distBackward = new double[numCities];
+            prevForward = new int[numCities];
+            prevForwardMiddle = new int[numCities];
+            nextBackward = new int[numCities];
+            nextBackwardMiddle = new int[numCities];
+            Arrays.fill(distForward, Double.POSITIVE_INFINITY);
+            Arrays.fill(distBackward, Double.POSITIVE_INFINITY);
+            Arrays.fill(prevForward, -1);
+            Arrays.fill(nextBackward, -1);
+            forwardHeap = new IndexedMinHeap(numCities);
+            backwardHeap = new IndexedMinHeap(numCities);
+            touched = new boolean[numCities];
+        }
+
+        void touch(int node) {
+            if (!touched[node]) {
+                touched[node] = true;
+                if (touchedCount == touchedNodes.length) {
+                    touchedNodes = Arrays.copyOf(touchedNodes, touchedCount * 2);
+                }
+                touchedNodes[touchedCount++] = node;
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                int node = touchedNodes[i];
+                touched[node] = false;
+                distForward[node] = Double.POSITIVE_INFINITY;
+                distBackward[node] = Double.POSITIVE_INFINITY;
+                prevForward[node] = -1;
+                nextBackward[node] = -1;
+            }
+            touchedCount = 0;
+            forwardHeap.clear();
+            backwardHeap.clear();
+        }
+    }
+}
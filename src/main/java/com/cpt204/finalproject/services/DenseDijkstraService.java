@@ -2,6 +2,7 @@ package com.cpt204.finalproject.services;
 
 import com.cpt204.finalproject.model.Attraction;
 import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.DistanceMatrixView;
 import com.cpt204.finalproject.model.RoadNetwork;
 
 import java.util.Arrays;
@@ -16,6 +17,16 @@ public final class DenseDijkstraService implements PathfindingService {
             RoadNetwork network, City src, City dst,
             List<Attraction> ignorePois, boolean useTimeout, long timeoutMillis) { // Renamed parameters for clarity
 
+        int srcIndex = network.indexOf(src);
+        if (srcIndex < 0) {
+            // Handle case where source city is not in the network (should ideally not happen with valid input)
+            return PathResult.empty("DenseDijkstra");
+        }
+        return findShortestPath(network, srcIndex, network.indexOf(dst), useTimeout, timeoutMillis);
+    }
+
+    @Override
+    public PathResult findShortestPath(RoadNetwork network, int srcIndex, int dstIndex, boolean useTimeout, long timeoutMillis) {
         final long startTime = System.nanoTime();
         final int V = network.getNumberOfCities();
         double[] dist = new double[V];
@@ -25,13 +36,8 @@ public final class DenseDijkstraService implements PathfindingService {
         Arrays.fill(dist, Double.POSITIVE_INFINITY);
         Arrays.fill(prev, -1); // Initialize prev array
 
-        Integer srcIndexInteger = network.getCityIndex(src);
-        if (srcIndexInteger == null) {
-            // Handle case where source city is not in the network (should ideally not happen with valid input)
-            return PathResult.empty("DenseDijkstra");
-        }
-        int srcIndex = srcIndexInteger;
         dist[srcIndex] = 0;
+        DistanceMatrixView adjMatrix = network.getDistanceMatrixView(); // Zero-copy direct distances, INF if no direct road
 
         for (int step = 0; step < V; step++) {
             int u = -1;
@@ -52,11 +58,11 @@ public final class DenseDijkstraService implements PathfindingService {
             // However, for DistanceCache, we need all distances from src.
             // So, we continue until all reachable nodes are processed or V steps are done.
 
-            double[][] adjMatrix = network.getDistanceMatrix(); // Assuming this returns direct distances, INF if no direct road
             for (int v = 0; v < V; v++) {
+                double w = adjMatrix.get(u, v);
                 // Check for direct edge existence (not INF) and if path through u is shorter
-                if (adjMatrix[u][v] != Double.POSITIVE_INFINITY && !visited[v] && dist[u] + adjMatrix[u][v] < dist[v]) {
-                    dist[v] = dist[u] + adjMatrix[u][v];
+                if (w != Double.POSITIVE_INFINITY && !visited[v] && dist[u] + w < dist[v]) {
+                    dist[v] = dist[u] + w;
                     prev[v] = u; // Store predecessor for path reconstruction
                 }
             }
@@ -66,12 +72,10 @@ public final class DenseDijkstraService implements PathfindingService {
             }
         }
 
-        Integer dstIndexInteger = network.getCityIndex(dst);
         double finalDistance;
         List<City> path = List.of(); // Default to empty path
 
-        if (dstIndexInteger != null) {
-            int dstIndex = dstIndexInteger;
+        if (dstIndex >= 0) {
             finalDistance = dist[dstIndex];
             if (finalDistance != Double.POSITIVE_INFINITY) {
                  path = PathReconstructionHelper.reconstructPath(network, prev, srcIndex, dstIndex);
@@ -86,8 +90,8 @@ public final class DenseDijkstraService implements PathfindingService {
         
         final double duration = (System.nanoTime() - startTime) / 1_000_000.0;
 
-        // The PathResult now expects the full dist array for all nodes from src.
+        // The PathResult now expects the full dist array for all nodes from src, plus the prev[] tree it came from.
         // And the specific distance/path to 'dst' if 'dst' is not null.
-        return new PathResult(path, finalDistance, dist, duration, false, "DenseDijkstra");
+        return new PathResult(path, finalDistance, dist, prev, duration, false, "DenseDijkstra");
     }
 } 
\ No newline at end of file
@@ -1,21 +1,139 @@
 package com.cpt204.finalproject.services;
 
 import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
 import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.RoadNetworkListener;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
-public final class DistanceCache {
-    // Using LinkedHashMap or ensuring key set (S) is LinkedHashSet for consistent iteration order if needed elsewhere,
-    // but for cache lookup, Set equality is based on content.
-    private final Map<Set<City>, double[][]> cache = new HashMap<>();
-    private final Map<Set<City>, Map<City, Integer>> nodeToIndexMapCache = new HashMap<>();
-    private final Map<Set<City>, List<City>> nodeListCache = new HashMap<>();
+/**
+ * Caches pairwise shortest-path distance matrices keyed by the set of cities S (start, POIs, end).
+ * The cache is thread-safe and bounded by the total number of matrix cells; a W-TinyLFU policy admits
+ * sets by how often they are requested and evicts by recency, so heap usage stays stable on long-running servers.
+ * The matrix, its index map and its node list are stored together as one immutable {@link Entry}.
+ * Below the set level, a {@link DistanceRowCache} keeps full single-source rows so that overlapping sets
+ * share searches and a new matrix is often just a gather over cached rows. Rows can also be persisted to
+ * and served from a memory-mapped {@link DistanceSnapshot}.
+ * On a road update, matrices, rows and trees the change cannot affect are carried over to the new network
+ * version; affected rows that kept their shortest-path tree are repaired incrementally, and the rest are
+ * dropped and recomputed on demand.
+ */
+public final class DistanceCache implements RoadNetworkListener {
+    /** Default bound on cached matrix cells (8 bytes each), i.e. about 8 MB of distances. */
+    public static final long DEFAULT_MAXIMUM_CELLS = 1L << 20;
+    /** Default bound on cached single-source row cells, i.e. about 32 MB of rows. */
+    public static final long DEFAULT_MAXIMUM_ROW_CELLS = 1L << 22;
+
+    /**
+     * One cached precomputation for a set S. Everything a caller needs is read from the same entry,
+     * so a concurrent eviction can never separate a matrix from its mapping.
+     */
+    public static final class Entry {
+        private final double[][] distances;
+        private final Map<City, Integer> nodeToIndexMap;
+        private final List<City> nodeList;
+        private final RoadNetwork network;
+
+        Entry(double[][] distances, Map<City, Integer> nodeToIndexMap, List<City> nodeList, RoadNetwork network) {
+            this.distances = distances;
+            this.nodeToIndexMap = Collections.unmodifiableMap(nodeToIndexMap);
+            this.nodeList = Collections.unmodifiableList(nodeList);
+            this.network = network;
+        }
+
+        private Entry(Entry entry, RoadNetwork network) {
+            this.distances = entry.distances;
+            this.nodeToIndexMap = entry.nodeToIndexMap;
+            this.nodeList = entry.nodeList;
+            this.network = network;
+        }
+
+        /**
+         * @return The shared matrix {@code distances[i][j]} from the i-th to the j-th city of {@link #getNodeList()}; must not be modified.
+         */
+        public double[][] getDistances() {
+            return distances;
+        }
+
+        public Map<City, Integer> getNodeToIndexMap() {
+            return nodeToIndexMap;
+        }
+
+        public List<City> getNodeList() {
+            return nodeList;
+        }
+
+        /**
+         * @return The network version the distances are valid for.
+         */
+        public RoadNetwork getNetwork() {
+            return network;
+        }
+    }
+
+    private final WindowTinyLfuCache<Set<City>, Entry> cache;
+    private final SingleFlight<EntryKey, Entry> entryFlights = new SingleFlight<>();
+    private final PathfindingService defaultPathfinder;
+    private final long maximumRowCells;
+    private volatile DistanceRowCache rowCache; // full rows (with their search trees) by source, shared by every S containing that source
+    private volatile DistanceSnapshot snapshot; // rows loaded from disk, read in place from the mapped file
+
+    /**
+     * Creates a cache that precomputes with DenseDijkstraService unless a service is passed per call.
+     */
+    public DistanceCache() {
+        this(new DenseDijkstraService());
+    }
+
+    /**
+     * Creates a cache with a default single-source engine, e.g. BinaryHeapDijkstraService for sparse networks.
+     * @param defaultPathfinder A service that returns the full distArray when called with a null destination.
+     */
+    public DistanceCache(PathfindingService defaultPathfinder) {
+        this(defaultPathfinder, DEFAULT_MAXIMUM_CELLS);
+    }
+
+    /**
+     * Creates a cache with a default single-source engine and an explicit size bound.
+     * @param defaultPathfinder A service that returns the full distArray when called with a null destination.
+     * @param maximumCells The maximum total number of matrix cells (|S| * |S| per entry) kept in the cache.
+     */
+    public DistanceCache(PathfindingService defaultPathfinder, long maximumCells) {
+        this(defaultPathfinder, maximumCells, DEFAULT_MAXIMUM_ROW_CELLS);
+    }
+
+    /**
+     * Creates a cache with explicit bounds for both levels.
+     * @param defaultPathfinder A service that returns the full distArray when called with a null destination.
+     * @param maximumCells The maximum total number of matrix cells (|S| * |S| per entry) kept in the cache.
+     * @param maximumRowCells The maximum total number of cells (V per row) in the per-source row cache.
+     */
+    public DistanceCache(PathfindingService defaultPathfinder, long maximumCells, long maximumRowCells) {
+        if (defaultPathfinder == null) {
+            throw new IllegalArgumentException("Default PathfindingService cannot be null");
+        }
+        this.defaultPathfinder = defaultPathfinder;
+        this.maximumRowCells = maximumRowCells;
+        this.cache = new WindowTinyLfuCache<>(maximumCells, entry -> Math.max(1, entry.getNodeList().size() * entry.getNodeList().size()));
+    }
+
+    /**
+     * Same as {@link #getOrComputeDistances(Set, RoadNetwork, PathfindingService)} using the cache's default engine.
+     */
+    public double[][] getOrComputeDistances(Set<City> S, RoadNetwork network) {
+        return getOrComputeDistances(S, network, defaultPathfinder);
+    }
 
 
     /**
@@ -24,11 +142,34 @@ public final class DistanceCache {
      *
      * @param S A set of cities (start, POIs, end) for which pairwise distances are needed. Must be a LinkedHashSet to preserve order for indexing.
      * @param network The road network.
-     * @param dijkstraService The pathfinding service (e.g., DenseDijkstraService) to compute paths.
+     * @param dijkstraService The pathfinding service (DenseDijkstraService or BinaryHeapDijkstraService) to compute paths.
+     *                        If it also implements {@link DistanceTableService}, the rows that are not cached are computed in one call instead of one search per row.
      * @return A 2D array {@code shortest[m][m]} where {@code m = S.size()} and {@code shortest[i][j]} is the
      * distance from the i-th city in S to the j-th city in S.
      */
     public double[][] getOrComputeDistances(Set<City> S, RoadNetwork network, PathfindingService dijkstraService) {
+        return getOrComputeEntry(S, network, dijkstraService).getDistances();
+    }
+
+    /**
+     * Same as {@link #getOrComputeEntry(Set, RoadNetwork, PathfindingService)} using the cache's default engine.
+     */
+    public Entry getOrComputeEntry(Set<City> S, RoadNetwork network) {
+        return getOrComputeEntry(S, network, defaultPathfinder);
+    }
+
+    /**
+     * Retrieves or computes the cache entry for S. Prefer this over separate calls to
+     * {@link #getOrComputeDistances}, {@link #getNodeToIndexMap} and {@link #getNodeList}, which may
+     * observe different states of the cache when other threads evict entries in between.
+     * Concurrent misses for the same S are coalesced: one caller computes, the others wait for its result.
+     *
+     * @param S A LinkedHashSet of cities (start, POIs, end).
+     * @param network The road network.
+     * @param dijkstraService The service used on a miss.
+     * @return The entry holding the matrix together with its index map and node order.
+     */
+    public Entry getOrComputeEntry(Set<City> S, RoadNetwork network, PathfindingService dijkstraService) {
         // It's crucial that S is a LinkedHashSet to maintain insertion order for consistent indexing in the resulting matrix.
         // If S is just a HashSet, the order of nodes can vary, making the returned matrix's indexing unreliable.
         if (!(S instanceof LinkedHashSet)) {
@@ -36,69 +177,375 @@ public final class DistanceCache {
             throw new IllegalArgumentException("Input set S must be a LinkedHashSet to guarantee predictable matrix indexing.");
         }
 
-        return cache.computeIfAbsent(S, key -> {
-            List<City> nodes = new ArrayList<>(key); // Order is preserved from LinkedHashSet
-            int m = nodes.size();
-            double[][] shortestDistances = new double[m][m];
-            Map<City, Integer> nodeToIndexMapping = new HashMap<>();
-            for (int i = 0; i < m; i++) {
-                nodeToIndexMapping.put(nodes.get(i), i);
-            }
-
-            // Store the mapping and list for this key set S
-            nodeToIndexMapCache.put(key, nodeToIndexMapping);
-            nodeListCache.put(key, nodes);
-
-            for (int i = 0; i < m; i++) {
-                City sourceCity = nodes.get(i);
-                // Call Dijkstra from sourceCity to all other nodes in the network.
-                // The `dst` parameter is null because we want the dist[] array for all nodes from PathResult.
-                PathfindingService.PathResult result = dijkstraService.findShortestPath(network, sourceCity, null, List.of(), false, 0);
-                double[] allDistancesFromSource = result.getDistArray();
-
-                if (allDistancesFromSource == null) {
-                    // This should not happen if DenseDijkstraService is implemented correctly to always return distArray.
-                    // Fill with infinity to indicate error or missing data.
-                    System.err.println("Error: DenseDijkstraService did not return a distance array for source: " + sourceCity.getName());
-                    for (int j = 0; j < m; j++) {
-                        shortestDistances[i][j] = Double.POSITIVE_INFINITY;
-                    }
-                    continue; // Move to the next source city in S
+        Entry cached = cache.get(S);
+        if (cached != null && cached.getNetwork() == network) {
+            return cached;
+        }
+        // The key is a private copy so that callers may keep mutating their own set.
+        Set<City> key = Collections.unmodifiableSet(new LinkedHashSet<>(S));
+        // Single flight: concurrent misses for the same S and network version wait for the first caller's computation.
+        // A caller on another version never joins it, since it would get distances for the wrong network.
+        return entryFlights.execute(new EntryKey(key, network), () -> {
+            Entry justStored = cache.peek(key);
+            if (justStored != null && justStored.getNetwork() == network) {
+                return justStored;
+            }
+            Entry computed = computeEntry(key, network, dijkstraService);
+            synchronized (this) { // roadChanged cannot move to a newer version between the check and the store
+                if (isStale(network)) {
+                    return computed; // served, but never allowed to replace an entry of the newer version
                 }
+                // An entry left from another network version is replaced in place
+                return cache.replace(key, computed) ? computed : cache.putIfAbsent(key, computed);
+            }
+        });
+    }
+
+    /** Identifies one in-flight entry computation; networks compare by identity, like {@link Entry#getNetwork()}. */
+    private record EntryKey(Set<City> cities, RoadNetwork network) {
+    }
 
+    private Entry computeEntry(Set<City> key, RoadNetwork network, PathfindingService dijkstraService) {
+        List<City> nodes = new ArrayList<>(key); // Order is preserved from LinkedHashSet
+        int m = nodes.size();
+        double[][] shortestDistances = new double[m][m];
+        Map<City, Integer> nodeToIndexMapping = new HashMap<>();
+        int[] networkIndices = new int[m]; // -1 for cities missing from the network
+        for (int i = 0; i < m; i++) {
+            nodeToIndexMapping.put(nodes.get(i), i);
+            Integer networkIndex = network.getCityIndex(nodes.get(i));
+            networkIndices[i] = networkIndex == null ? -1 : networkIndex;
+        }
+
+        DistanceRowCache rows = getRowCache(network);
+        DistanceSnapshot disk = snapshotFor(network);
+        boolean tableEngine = dijkstraService instanceof DistanceTableService;
+        List<Integer> missingRows = new ArrayList<>(); // sources left to the table engine
+        for (int i = 0; i < m; i++) {
+            City sourceCity = nodes.get(i);
+            if (disk != null && networkIndices[i] >= 0 && disk.hasRow(networkIndices[i])) {
+                // Gather straight from the mapped snapshot; no row is copied or searched
                 for (int j = 0; j < m; j++) {
-                    City targetCity = nodes.get(j);
-                    Integer targetCityNetworkIndex = network.getCityIndex(targetCity);
-                    if (targetCityNetworkIndex != null && targetCityNetworkIndex < allDistancesFromSource.length) {
-                        shortestDistances[i][j] = allDistancesFromSource[targetCityNetworkIndex];
-                    } else {
-                        // Should not happen if cities in S are valid and in the network.
-                        shortestDistances[i][j] = Double.POSITIVE_INFINITY;
-                        System.err.println("Error: Target city " + targetCity.getName() + " not found in network index or distArray during cache computation.");
-                    }
+                    shortestDistances[i][j] = networkIndices[j] >= 0 ? disk.distance(networkIndices[i], networkIndices[j]) : Double.POSITIVE_INFINITY;
                 }
+                continue;
+            }
+            double[] allDistancesFromSource;
+            if (!tableEngine) {
+                allDistancesFromSource = networkIndices[i] < 0 ? null : getOrComputeRow(rows, networkIndices[i], sourceCity, network, dijkstraService);
+            } else if (networkIndices[i] < 0 || (allDistancesFromSource = rows.getRow(networkIndices[i])) == null) {
+                missingRows.add(i);
+                continue;
+            }
+
+            if (allDistancesFromSource == null) {
+                // Fill with infinity to indicate error or missing data.
+                Arrays.fill(shortestDistances[i], Double.POSITIVE_INFINITY);
+                continue; // Move to the next source city in S
+            }
+
+            // Gather the columns of S from the full row
+            for (int j = 0; j < m; j++) {
+                if (networkIndices[j] >= 0) {
+                    shortestDistances[i][j] = allDistancesFromSource[networkIndices[j]];
+                } else {
+                    // Should not happen if cities in S are valid and in the network.
+                    shortestDistances[i][j] = Double.POSITIVE_INFINITY;
+                    System.err.println("Error: Target city " + nodes.get(j).getName() + " not found in network index during cache computation.");
+                }
+            }
+        }
+        if (!missingRows.isEmpty()) {
+            // Engines with a many-to-many mode fill the rows no cache level holds in one pass.
+            List<City> missingSources = new ArrayList<>(missingRows.size());
+            for (int i : missingRows) {
+                missingSources.add(nodes.get(i));
+            }
+            double[][] table = ((DistanceTableService) dijkstraService).computeDistanceTable(network, missingSources, nodes);
+            for (int k = 0; k < missingRows.size(); k++) {
+                shortestDistances[missingRows.get(k)] = table[k];
             }
-            return shortestDistances;
+        }
+        return new Entry(shortestDistances, nodeToIndexMapping, nodes, network);
+    }
+
+    /**
+     * Gets the full distance row from a source city, running one single-source search on a miss.
+     * The row is shared by every set S containing that source, and concurrent misses share one search.
+     * A row held by the snapshot is copied out of the mapped file for the caller and not cached,
+     * since the snapshot already keeps it off the heap.
+     *
+     * @param source The source city.
+     * @param network The road network.
+     * @param dijkstraService A service that returns the full distArray when called with a null destination.
+     * @return The read-only row indexed by city index, or null if the source is unknown or the search failed.
+     */
+    public double[] getOrComputeRow(City source, RoadNetwork network, PathfindingService dijkstraService) {
+        Integer sourceIndex = network.getCityIndex(source);
+        if (sourceIndex == null) {
+            return null;
+        }
+        DistanceSnapshot disk = snapshotFor(network);
+        if (disk != null && disk.hasRow(sourceIndex)) {
+            return disk.copyRow(sourceIndex);
+        }
+        return getOrComputeRow(getRowCache(network), sourceIndex, source, network, dijkstraService);
+    }
+
+    /**
+     * Loads a row into the row cache with one search. Callers read snapshot rows in place before getting here.
+     */
+    private double[] getOrComputeRow(DistanceRowCache rows, int sourceIndex, City sourceCity,
+                                     RoadNetwork network, PathfindingService dijkstraService) {
+        return rows.getOrComputeRow(sourceIndex, index -> {
+            // Call Dijkstra from sourceCity to all other nodes in the network.
+            // The end index is -1 because we want the dist[] array for all nodes from PathResult; the index overload skips City lookups.
+            PathfindingService.PathResult result = dijkstraService.findShortestPath(network, index, -1, false, 0);
+            double[] row = result.getDistArray();
+            if (row == null || row.length != network.getNumberOfCities()) {
+                System.err.println("Error: " + result.getAlgorithmName() + " did not return a distance array for source: " + sourceCity.getName());
+                return null;
+            }
+            return new DistanceRowCache.Row(row, result.getPrevArray());
         });
     }
 
+
+    /**
+     * Moves the cache to the changed network. Rows (with their trees) from sources the change cannot affect are
+     * copied to the new network's row cache. Affected rows whose tree is kept are repaired with
+     * {@link IncrementalShortestPathRepair}, which re-settles only the part of the tree under the changed road.
+     * Matrices whose sources are all unaffected are kept, matrices whose rows are all available again are
+     * re-gathered, and everything else is dropped. Sources whose old distances are not known (neither cached, nor in the snapshot,
+     * nor in the all-pairs tables of the default engine) are treated as affected.
+     * A snapshot of the previous network is detached, since its rows no longer describe the current one.
+     *
+     * @param change The road update, applied to the network this cache was serving.
+     */
+    @Override
+    public synchronized void roadChanged(RoadChange change) {
+        RoadNetwork previous = change.getPrevious();
+        RoadNetwork current = change.getCurrent();
+        DistanceRowCache oldRows = rowCache != null && rowCache.getNetwork() == previous ? rowCache : null;
+        DistanceSnapshot oldDisk = snapshotFor(previous);
+        AllPairsShortestPaths oldTables = defaultPathfinder instanceof AllPairsPathfindingService
+                ? ((AllPairsPathfindingService) defaultPathfinder).peekTables(previous) : null;
+        byte[] verdicts = new byte[previous.getNumberOfCities()]; // 0 = not yet decided, 1 = unaffected, 2 = affected
+
+        DistanceRowCache newRows = new DistanceRowCache(current, maximumRowCells);
+        IncrementalShortestPathRepair repair = null;
+        if (oldRows != null) {
+            for (Map.Entry<Integer, double[]> row : oldRows.snapshotRows().entrySet()) {
+                int source = row.getKey();
+                if (!isAffected(change, source, verdicts, oldRows, oldDisk, oldTables)) {
+                    newRows.putRow(source, new DistanceRowCache.Row(row.getValue(), oldRows.peekTree(source)));
+                    continue;
+                }
+                int[] prev = oldRows.peekTree(source);
+                if (prev != null) {
+                    // Cached rows are shared read-only, so the repair works on copies
+                    double[] repairedRow = row.getValue().clone();
+                    int[] repairedTree = prev.clone();
+                    if (repair == null) {
+                        repair = new IncrementalShortestPathRepair(change);
+                    }
+                    repair.repair(repairedRow, repairedTree);
+                    newRows.putRow(source, new DistanceRowCache.Row(repairedRow, repairedTree));
+                }
+            }
+        }
+        rowCache = newRows;
+
+        for (Map.Entry<Set<City>, Entry> cached : cache.snapshot().entrySet()) {
+            Entry entry = cached.getValue();
+            if (entry.getNetwork() != previous) {
+                continue; // already stale; replaced on its next request
+            }
+            boolean affected = false;
+            for (City city : entry.getNodeList()) {
+                Integer source = previous.getCityIndex(city);
+                if (source == null || isAffected(change, source, verdicts, oldRows, oldDisk, oldTables)) {
+                    affected = true;
+                    break;
+                }
+            }
+            if (affected) {
+                double[][] regathered = gatherFromRows(entry.getNodeList(), current, newRows);
+                if (regathered != null) {
+                    cache.replace(cached.getKey(), new Entry(regathered, entry.getNodeToIndexMap(), entry.getNodeList(), current));
+                } else {
+                    cache.invalidate(cached.getKey());
+                }
+            } else {
+                cache.replace(cached.getKey(), new Entry(entry, current));
+            }
+        }
+        if (oldDisk != null) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * @return The |S| x |S| matrix gathered from cached rows, or null if any source row is missing.
+     */
+    private static double[][] gatherFromRows(List<City> nodes, RoadNetwork network, DistanceRowCache rows) {
+        int m = nodes.size();
+        int[] networkIndices = new int[m];
+        double[][] sourceRows = new double[m][];
+        for (int i = 0; i < m; i++) {
+            Integer index = network.getCityIndex(nodes.get(i));
+            if (index == null || (sourceRows[i] = rows.peekRow(index)) == null) {
+                return null;
+            }
+            networkIndices[i] = index;
+        }
+        double[][] distances = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                distances[i][j] = sourceRows[i][networkIndices[j]];
+            }
+        }
+        return distances;
+    }
+
+    private static boolean isAffected(RoadChange change, int source, byte[] verdicts, DistanceRowCache oldRows,
+                                      DistanceSnapshot oldDisk, AllPairsShortestPaths oldTables) {
+        if (verdicts[source] == 0) {
+            int from = change.getFromIndex();
+            int to = change.getToIndex();
+            int[] prev = oldRows == null ? null : oldRows.peekTree(source);
+            double[] row = oldRows == null ? null : oldRows.peekRow(source);
+            boolean affected;
+            if (row != null) {
+                affected = RoadChangeImpact.affects(change, row, prev);
+            } else if (oldDisk != null && oldDisk.hasRow(source)) {
+                affected = RoadChangeImpact.affects(change, oldDisk.distance(source, from), oldDisk.distance(source, to), prev);
+            } else if (oldTables != null) {
+                affected = RoadChangeImpact.affects(change, oldTables.distance(source, from), oldTables.distance(source, to), prev);
+            } else if (prev != null) {
+                affected = RoadChangeImpact.affectsTree(change, prev);
+            } else {
+                affected = true; // nothing known about this source
+            }
+            verdicts[source] = (byte) (affected ? 2 : 1);
+        }
+        return verdicts[source] == 2;
+    }
+
+    /**
+     * Makes rows from a snapshot available to this cache. Sources covered by the snapshot are served from
+     * the mapped file without any search; the snapshot is used only for the network it was loaded for.
+     * @param snapshot The loaded snapshot, or null to detach.
+     */
+    public void attachSnapshot(DistanceSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Writes every row known to this cache for the network (computed rows and rows of an attached snapshot)
+     * to a snapshot file, together with optional all-pairs tables. Nothing is written while the cache holds no
+     * distances for the network, so an existing file is never replaced by an empty one.
+     * @param file The snapshot file to create or replace.
+     * @param network The road network.
+     * @param allPairs All-pairs tables to include, or null.
+     * @return true if the file was written, false if there was nothing to save.
+     * @throws IOException If the file cannot be written.
+     */
+    public boolean saveSnapshot(Path file, RoadNetwork network, AllPairsShortestPaths allPairs) throws IOException {
+        Map<Integer, double[]> rows = new TreeMap<>();
+        DistanceSnapshot disk = snapshotFor(network);
+        if (allPairs == null && disk != null) {
+            allPairs = disk.getAllPairs();
+        }
+        if (allPairs == null) { // All-pairs tables already cover every row
+            if (disk != null) {
+                for (int source = 0; source < network.getNumberOfCities(); source++) {
+                    if (disk.hasRow(source)) {
+                        rows.put(source, disk.copyRow(source)); // copied, since the file is about to be replaced
+                    }
+                }
+            }
+            DistanceRowCache cached = rowCache;
+            if (cached != null && cached.getNetwork() == network) {
+                rows.putAll(cached.snapshotRows());
+            }
+        }
+        if (rows.isEmpty() && allPairs == null) {
+            return false;
+        }
+        DistanceSnapshot.write(file, network, rows, allPairs);
+        return true;
+    }
+
+    private DistanceSnapshot snapshotFor(RoadNetwork network) {
+        DistanceSnapshot disk = snapshot;
+        return disk != null && disk.getNetwork() == network ? disk : null;
+    }
+
+    /**
+     * @return The row cache of {@code network}, installed if it replaces another network of the same or an
+     * older version. A request for an older version than the one being served (e.g. one that started before a
+     * road update) gets a private row cache that is dropped after the request.
+     */
+    private DistanceRowCache getRowCache(RoadNetwork network) {
+        DistanceRowCache rows = rowCache;
+        if (rows == null || rows.getNetwork() != network) {
+            synchronized (this) {
+                rows = rowCache;
+                if (rows == null || rows.getNetwork() != network) {
+                    rows = new DistanceRowCache(network, maximumRowCells);
+                    if (!isStale(network)) {
+                        rowCache = rows;
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return true if {@code network} is an older version than the network the row cache serves.
+     */
+    private boolean isStale(RoadNetwork network) {
+        DistanceRowCache rows = rowCache;
+        return rows != null && rows.getNetwork() != network && network.getVersion() < rows.getNetwork().getVersion();
+    }
+
+    /**
+     * Rebuilds a path from the shortest-path tree kept when {@code from} was a precomputation source,
+     * so segments between cities of a cached S need no new search.
+     * @param network The road network the tree must belong to.
+     * @param from The source city.
+     * @param to The destination city.
+     * @return The path (empty if unreachable), or null if no tree from {@code from} is kept for this network.
+     */
+    public List<City> getCachedPath(RoadNetwork network, City from, City to) {
+        DistanceRowCache rows = rowCache;
+        if (rows == null || rows.getNetwork() != network) {
+            return null;
+        }
+        return rows.reconstructPath(from, to);
+    }
+
     /**
      * Gets the mapping from City to its index within the specific ordered set S used for a cache entry.
      * This map is created when getOrComputeDistances is first called for a set S.
      * @param S The set of cities (must be the same instance or equal to one used in getOrComputeDistances).
-     * @return A map from City to its 0-based index in the ordered list derived from S, or null if S not cached.
+     * @return A map from City to its 0-based index in the ordered list derived from S, or null if S is not (or no longer) cached.
      */
     public Map<City, Integer> getNodeToIndexMap(Set<City> S) {
-        return nodeToIndexMapCache.get(S);
+        Entry entry = cache.peek(S);
+        return entry == null ? null : entry.getNodeToIndexMap();
     }
     
     /**
      * Gets the ordered list of cities for a given set S, corresponding to the cache entry.
      * This list defines the row/column order for the distance matrix from getOrComputeDistances.
      * @param S The set of cities.
-     * @return The ordered list of cities, or null if S not cached.
+     * @return The ordered list of cities, or null if S is not (or no longer) cached.
      */
     public List<City> getNodeList(Set<City> S){
-        return nodeListCache.get(S);
+        Entry entry = cache.peek(S);
+        return entry == null ? null : entry.getNodeList();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Background warm-up of the per-source row cache in {@link DistanceCache}. Cities are ranked by how likely
+ * they are to appear in trips (road degree or number of attractions) and their rows are computed one by one,
+ * while requests keep being served. Requests use every row as soon as it is cached, and a request that needs
+ * a row still being warmed waits for that search instead of starting its own.
+ */
+public final class DistanceCacheWarmUp {
+
+    /**
+     * How hub cities are ranked.
+     */
+    public enum Ranking {
+        /** Most outgoing plus incoming roads first. */
+        DEGREE,
+        /** Most attractions first, so popular POI cities are ready. */
+        ATTRACTIONS;
+
+        /**
+         * Parses a configuration value such as "degree" or "attractions".
+         * @param value The configured name, case-insensitive; null selects DEGREE.
+         * @return The ranking, or DEGREE if the value is not recognised.
+         */
+        public static Ranking fromString(String value) {
+            if (value == null) {
+                return DEGREE;
+            }
+            try {
+                return Ranking.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Warning: Unknown warm-up ranking '" + value + "'. Using DEGREE.");
+                return DEGREE;
+            }
+        }
+    }
+
+    private DistanceCacheWarmUp() {
+    }
+
+    /**
+     * Ranks all cities of the network, best warm-up candidates first. Ties keep the network's city order.
+     * @param network The road network.
+     * @param ranking The ranking criterion.
+     * @return The ranked cities.
+     */
+    public static List<City> rankCities(RoadNetwork network, Ranking ranking) {
+        final int V = network.getNumberOfCities();
+        final int[] score = new int[V];
+        if (ranking == Ranking.ATTRACTIONS) {
+            for (int v = 0; v < V; v++) {
+                score[v] = network.getAttractionsInCity(network.getCityByIndex(v).getName()).size();
+            }
+        } else {
+            CsrGraph forward = network.getAdjacency();
+            CsrGraph backward = network.getReverseAdjacency();
+            for (int v = 0; v < V; v++) {
+                score[v] = forward.outDegree(v) + backward.outDegree(v);
+            }
+        }
+        List<Integer> order = new ArrayList<>(V);
+        for (int v = 0; v < V; v++) {
+            order.add(v);
+        }
+        order.sort(Comparator.comparingInt((Integer v) -> -score[v]));
+        List<City> ranked = new ArrayList<>(V);
+        for (int v : order) {
+            ranked.add(network.getCityByIndex(v));
+        }
+        return ranked;
+    }
+
+    /**
+     * Starts precomputing the rows of the top-ranked cities on the given executor.
+     *
+     * @param cache The cache to fill.
+     * @param network The road network.
+     * @param pathfinder A service that returns the full distArray when called with a null destination.
+     * @param ranking How cities are ranked.
+     * @param cityCount How many top-ranked cities to warm up; 0 or less does nothing.
+     * @param executor The executor running the warm-up.
+     * @return A future completed with the number of rows that are cached once the warm-up ends.
+     */
+    public static CompletableFuture<Integer> start(DistanceCache cache, RoadNetwork network, PathfindingService pathfinder,
+                                                   Ranking ranking, int cityCount, Executor executor) {
+        return start(cache, () -> network, pathfinder, ranking, cityCount, executor);
+    }
+
+    /**
+     * Starts precomputing the rows of the top-ranked cities, following road updates: the network is read again
+     * before each row, so rows after an update are computed for the new version instead of the replaced one.
+     *
+     * @param cache The cache to fill.
+     * @param network Supplies the network currently being served.
+     * @param pathfinder A service that returns the full distArray when called with a null destination.
+     * @param ranking How cities are ranked.
+     * @param cityCount How many top-ranked cities to warm up; 0 or less does nothing.
+     * @param executor The executor running the warm-up.
+     * @return A future completed with the number of rows that are cached once the warm-up ends.
+     */
+    public static CompletableFuture<Integer> start(DistanceCache cache, Supplier<RoadNetwork> network, PathfindingService pathfinder,
+                                                   Ranking ranking, int cityCount, Executor executor) {
+        if (cityCount <= 0) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            final long startTime = System.nanoTime();
+            List<City> hubs = rankCities(network.get(), ranking); // road updates keep the cities, so one ranking serves every version
+            int warmed = 0;
+            for (City hub : hubs.subList(0, Math.min(cityCount, hubs.size()))) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                if (cache.getOrComputeRow(hub, network.get(), pathfinder) != null) {
+                    warmed++;
+                }
+            }
+            System.out.println("Distance cache warm-up finished: " + warmed + " rows by " + ranking.name().toLowerCase(Locale.ROOT)
+                    + " in " + String.format("%.1f", (System.nanoTime() - startTime) / 1_000_000.0) + " ms.");
+            return warmed;
+        }, executor);
+    }
+
+    /**
+     * Creates a single daemon thread for warm-up jobs, so a running warm-up never keeps the application alive.
+     * @return The executor; callers should shut it down after submitting.
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "distance-cache-warmup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Second cache level under {@link DistanceCache}: full single-source distance rows keyed by source city index.
+ * Sets S that share sources (e.g. trips from the same hub city) reuse the same rows, and any |S| x |S| matrix
+ * is assembled by gathering columns from them. A row may carry the shortest-path tree of its search, so paths
+ * leaving that source are rebuilt with {@link PathReconstructionHelper} instead of searching again; the tree
+ * lives and is evicted with its row. Bounded by total cells with the same W-TinyLFU policy, a tree counting
+ * as half a row. Concurrent misses for the same source share one search.
+ */
+public final class DistanceRowCache {
+    private final RoadNetwork network;
+    private final WindowTinyLfuCache<Integer, Row> rows;
+    private final SingleFlight<Integer, double[]> rowFlights = new SingleFlight<>();
+
+    /**
+     * One cached source: its distance row and, if the search kept it, its predecessor tree.
+     */
+    public static final class Row {
+        private final double[] distances;
+        private final int[] tree;
+
+        /**
+         * @param distances Distances from the source to every city, indexed by city index; must not be modified afterwards.
+         * @param tree The predecessor array of the search that produced the row, or null; must not be modified afterwards.
+         */
+        public Row(double[] distances, int[] tree) {
+            this.distances = distances;
+            this.tree = tree;
+        }
+
+        public double[] getDistances() {
+            return distances;
+        }
+
+        public int[] getTree() {
+            return tree;
+        }
+
+        /** Weight in double-sized cells: ints take half the space of doubles. */
+        int weight() {
+            return distances.length + (tree == null ? 0 : (tree.length + 1) / 2);
+        }
+    }
+
+    /**
+     * @param network The network the rows belong to.
+     * @param maximumCells The maximum total number of cached row cells (V per row).
+     */
+    public DistanceRowCache(RoadNetwork network, long maximumCells) {
+        this.network = network;
+        this.rows = new WindowTinyLfuCache<>(maximumCells, Row::weight);
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @param sourceIndex The source city index.
+     * @return The shared, read-only distance row from that source, or null if not cached.
+     */
+    public double[] getRow(int sourceIndex) {
+        Row row = rows.get(sourceIndex);
+        return row == null ? null : row.distances;
+    }
+
+    /**
+     * Looks up a row without counting it as a request, e.g. to check whether a whole set of sources is cached.
+     * @param sourceIndex The source city index.
+     * @return The row, or null if not cached.
+     */
+    public double[] peekRow(int sourceIndex) {
+        Row row = rows.peek(sourceIndex);
+        return row == null ? null : row.distances;
+    }
+
+    /**
+     * @param sourceIndex The source city index.
+     * @return The shortest-path tree kept with the cached row from that source, or null.
+     */
+    public int[] peekTree(int sourceIndex) {
+        Row row = rows.peek(sourceIndex);
+        return row == null ? null : row.tree;
+    }
+
+    /**
+     * Stores a complete row. The array must not be modified afterwards.
+     * @param sourceIndex The source city index.
+     * @param row Distances from the source to every city, indexed by city index.
+     * @return The row now cached for that source (an existing one wins).
+     */
+    public double[] putRow(int sourceIndex, double[] row) {
+        return putRow(sourceIndex, new Row(row, null));
+    }
+
+    /**
+     * Stores a complete row together with its shortest-path tree.
+     * @param sourceIndex The source city index.
+     * @param row The row and tree; neither array may be modified afterwards.
+     * @return The distances now cached for that source (an existing row wins).
+     */
+    public double[] putRow(int sourceIndex, Row row) {
+        int V = network.getNumberOfCities();
+        if (row.distances.length != V) {
+            throw new IllegalArgumentException("Row length " + row.distances.length + " does not match the network size " + V);
+        }
+        if (row.tree != null && row.tree.length != V) {
+            row = new Row(row.distances, null); // a tree from another network size cannot be used
+        }
+        return rows.putIfAbsent(sourceIndex, row).distances;
+    }
+
+    /**
+     * Gets the row for a source, computing it on a miss. Callers that miss on a source whose row is already
+     * being computed wait for that computation instead of starting another search.
+     *
+     * @param sourceIndex The source city index.
+     * @param loader Computes the full row (and optionally its tree) for the source index, or returns null on failure (nothing is cached then).
+     * @return The shared, read-only row, or null if the loader failed.
+     */
+    public double[] getOrComputeRow(int sourceIndex, IntFunction<Row> loader) {
+        double[] row = getRow(sourceIndex);
+        if (row != null) {
+            return row;
+        }
+        return rowFlights.execute(sourceIndex, () -> {
+            double[] cached = peekRow(sourceIndex); // a flight that just finished may have stored it
+            if (cached != null) {
+                return cached;
+            }
+            Row computed = loader.apply(sourceIndex);
+            return computed == null ? null : putRow(sourceIndex, computed);
+        });
+    }
+
+    /**
+     * Rebuilds the path between two cities from the tree kept with the source's row.
+     * @param src The source city.
+     * @param dst The destination city.
+     * @return The path (empty if unreachable), or null if no tree for {@code src} is cached.
+     */
+    public List<City> reconstructPath(City src, City dst) {
+        Integer srcIndex = network.getCityIndex(src);
+        Integer dstIndex = network.getCityIndex(dst);
+        if (srcIndex == null || dstIndex == null) {
+            return null;
+        }
+        int[] prev = peekTree(srcIndex);
+        if (prev == null) {
+            return null;
+        }
+        return PathReconstructionHelper.reconstructPath(network, prev, srcIndex, dstIndex);
+    }
+
+    /**
+     * @return A point-in-time copy of the cached rows keyed by source index; the rows themselves are shared.
+     */
+    public Map<Integer, double[]> snapshotRows() {
+        Map<Integer, double[]> copy = new LinkedHashMap<>();
+        rows.snapshot().forEach((source, row) -> copy.put(source, row.distances));
+        return copy;
+    }
+
+    /**
+     * @return The number of cached rows.
+     */
+    public int size() {
+        return rows.size();
+    }
+}
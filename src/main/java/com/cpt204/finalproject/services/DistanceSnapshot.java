@@ -0,0 +1,306 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped snapshot of precomputed distance rows and, optionally, all-pairs tables.
+ * The file is stamped with a fingerprint of the road network (city names, roads and distances), so a snapshot
+ * written for other CSV contents is rejected. Rows are read in place from the mapped file, so a warm start
+ * needs no searches and several JVMs on one host share the same pages.
+ *
+ * <p>Layout (little-endian): a 32-byte header (magic, version, fingerprint, city count, flags, row count),
+ * the source index of each row padded to 8 bytes, the rows ({@code rowCount * V} doubles), then, if flagged,
+ * the all-pairs distances ({@code V * V} doubles) and next hops ({@code V * V} shorts).
+ */
+public final class DistanceSnapshot {
+    private static final int MAGIC = 0x54535044; // "TSPD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int FLAG_ALL_PAIRS = 1;
+
+    private final RoadNetwork network;
+    private final int numCities;
+    private final int[] rowSlot; // rowSlot[source] = position of its row in rows, or -1
+    private final int rowCount;
+    private final DoubleBuffer rows;
+    private final DoubleBuffer allPairsDistances; // null if the snapshot has no all-pairs tables
+    private final ShortBuffer allPairsNextHops;
+
+    private DistanceSnapshot(RoadNetwork network, int[] rowSlot, int rowCount, DoubleBuffer rows,
+                             DoubleBuffer allPairsDistances, ShortBuffer allPairsNextHops) {
+        this.network = network;
+        this.numCities = network.getNumberOfCities();
+        this.rowSlot = rowSlot;
+        this.rowCount = rowCount;
+        this.rows = rows;
+        this.allPairsDistances = allPairsDistances;
+        this.allPairsNextHops = allPairsNextHops;
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of everything distances depend on: city order and names, roads and their lengths.
+     * Two networks loaded from the same CSV contents have the same fingerprint.
+     * @param network The road network.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(RoadNetwork network) {
+        final int V = network.getNumberOfCities();
+        final CsrGraph graph = network.getAdjacency();
+        long hash = 0xCBF29CE484222325L; // FNV-1a offset basis
+        hash = mix(hash, V);
+        for (int u = 0; u < V; u++) {
+            City city = network.getCityByIndex(u);
+            hash = mix(hash, city.getName().hashCode());
+            hash = mix(hash, graph.outDegree(u));
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                hash = mix(hash, graph.target(e));
+                hash = mix(hash, Double.doubleToLongBits(graph.weight(e)));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= 0x100000001B3L; // FNV-1a prime
+        }
+        return hash;
+    }
+
+    /**
+     * Maps a snapshot file for the given network.
+     * @param file The snapshot file.
+     * @param network The network the snapshot must have been written for.
+     * @return The snapshot, or null if the file is missing, unreadable or belongs to a different network.
+     */
+    public static DistanceSnapshot load(Path file, RoadNetwork network) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        final int V = network.getNumberOfCities();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                System.err.println("Warning: Ignoring truncated distance snapshot " + file);
+                return null;
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                System.err.println("Warning: Ignoring distance snapshot with unknown format " + file);
+                return null;
+            }
+            if (mapped.getLong(8) != fingerprint(network) || mapped.getInt(16) != V) {
+                System.out.println("Distance snapshot " + file + " was written for a different road network; ignoring it.");
+                return null;
+            }
+            int flags = mapped.getInt(20);
+            int rowCount = mapped.getInt(24);
+            long indexBytes = align8(4L * rowCount);
+            long rowsOffset = HEADER_BYTES + indexBytes;
+            long allPairsOffset = rowsOffset + 8L * rowCount * V;
+            long expectedSize = allPairsOffset + ((flags & FLAG_ALL_PAIRS) != 0 ? 10L * V * V : 0);
+            if (rowCount < 0 || rowCount > V || size != expectedSize) {
+                System.err.println("Warning: Ignoring corrupt distance snapshot " + file);
+                return null;
+            }
+
+            int[] rowSlot = new int[V];
+            Arrays.fill(rowSlot, -1);
+            for (int slot = 0; slot < rowCount; slot++) {
+                int source = mapped.getInt(HEADER_BYTES + 4 * slot);
+                if (source < 0 || source >= V) {
+                    System.err.println("Warning: Ignoring corrupt distance snapshot " + file);
+                    return null;
+                }
+                rowSlot[source] = slot;
+            }
+            DoubleBuffer rows = region(mapped, rowsOffset, 8L * rowCount * V).asDoubleBuffer();
+            DoubleBuffer allPairsDistances = null;
+            ShortBuffer allPairsNextHops = null;
+            if ((flags & FLAG_ALL_PAIRS) != 0) {
+                allPairsDistances = region(mapped, allPairsOffset, 8L * V * V).asDoubleBuffer();
+                allPairsNextHops = region(mapped, allPairsOffset + 8L * V * V, 2L * V * V).asShortBuffer();
+            }
+            return new DistanceSnapshot(network, rowSlot, rowCount, rows, allPairsDistances, allPairsNextHops);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read distance snapshot " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot. The file is written next to the target and moved into place, so processes that
+     * have the previous snapshot mapped keep reading a consistent file.
+     *
+     * @param file The snapshot file to create or replace.
+     * @param network The network the rows belong to.
+     * @param rows Full distance rows keyed by source city index.
+     * @param allPairs All-pairs tables for {@code network}, or null.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, RoadNetwork network, Map<Integer, double[]> rows, AllPairsShortestPaths allPairs) throws IOException {
+        final int V = network.getNumberOfCities();
+        if (allPairs != null && allPairs.getNetwork() != network) {
+            throw new IllegalArgumentException("All-pairs tables belong to a different network.");
+        }
+        int rowCount = rows.size();
+        long indexBytes = align8(4L * rowCount);
+        long size = HEADER_BYTES + indexBytes + 8L * rowCount * V + (allPairs != null ? 10L * V * V : 0);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Distance snapshot of " + size + " bytes exceeds the single-mapping limit.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(fingerprint(network)).putInt(V)
+                .putInt(allPairs != null ? FLAG_ALL_PAIRS : 0).putInt(rowCount).putInt(0);
+        for (int source : rows.keySet()) {
+            buffer.putInt(source);
+        }
+        buffer.position((int) (HEADER_BYTES + indexBytes));
+        for (double[] row : rows.values()) {
+            if (row.length != V) {
+                throw new IllegalArgumentException("Row length " + row.length + " does not match the network size " + V);
+            }
+            buffer.asDoubleBuffer().put(row);
+            buffer.position(buffer.position() + 8 * V);
+        }
+        if (allPairs != null) {
+            buffer.asDoubleBuffer().put(allPairs.distanceTable());
+            buffer.position(buffer.position() + 8 * V * V);
+            buffer.asShortBuffer().put(allPairs.nextHopTable());
+        }
+        buffer.rewind();
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads the all-pairs tables from the snapshot file, or computes them and writes a fresh snapshot holding them.
+     * Write failures are reported and otherwise ignored, since the tables are already in memory.
+     * @param file The snapshot file, or null to always compute.
+     * @param network The road network.
+     * @return The all-pairs tables for {@code network}.
+     */
+    public static AllPairsShortestPaths loadOrComputeAllPairs(Path file, RoadNetwork network) {
+        DistanceSnapshot snapshot = load(file, network);
+        if (snapshot != null && snapshot.hasAllPairs()) {
+            return snapshot.getAllPairs();
+        }
+        AllPairsShortestPaths allPairs = AllPairsShortestPaths.compute(network);
+        if (file != null) {
+            try {
+                write(file, network, Map.of(), allPairs);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not write distance snapshot " + file + ": " + e.getMessage());
+            }
+        }
+        return allPairs;
+    }
+
+    private static ByteBuffer region(MappedByteBuffer mapped, long offset, long length) {
+        // slice() resets the byte order, so it is set again on the view
+        return mapped.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align8(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return The number of individually stored rows (rows covered by all-pairs tables are not counted).
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean hasAllPairs() {
+        return allPairsDistances != null;
+    }
+
+    /**
+     * @param source A city index.
+     * @return true if distances from {@code source} can be read from this snapshot.
+     */
+    public boolean hasRow(int source) {
+        return allPairsDistances != null || rowSlot[source] >= 0;
+    }
+
+    /**
+     * Reads one distance in place from the mapped file.
+     * @param source A city index for which {@link #hasRow(int)} is true.
+     * @param target A city index.
+     * @return The shortest distance, or Double.POSITIVE_INFINITY if unreachable.
+     */
+    public double distance(int source, int target) {
+        if (allPairsDistances != null) {
+            return allPairsDistances.get(source * numCities + target);
+        }
+        return rows.get(rowSlot[source] * numCities + target);
+    }
+
+    /**
+     * Copies a full row out of the mapped file.
+     * @param source A city index for which {@link #hasRow(int)} is true.
+     * @return A new array of distances from {@code source}, indexed by city index.
+     */
+    public double[] copyRow(int source) {
+        double[] row = new double[numCities];
+        if (allPairsDistances != null) {
+            allPairsDistances.get(source * numCities, row);
+        } else {
+            rows.get(rowSlot[source] * numCities, row);
+        }
+        return row;
+    }
+
+    /**
+     * Wraps the all-pairs tables of the mapped file; nothing is copied onto the heap.
+     * @return The tables, or null if this snapshot has none.
+     */
+    public AllPairsShortestPaths getAllPairs() {
+        if (allPairsDistances == null) {
+            return null;
+        }
+        return AllPairsShortestPaths.fromTables(network, allPairsDistances, allPairsNextHops);
+    }
+}
@@ -0,0 +1,37 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.List;
+
+/**
+ * Defines the contract for engines that compute a whole many-to-many distance table in one pass,
+ * instead of one single-source search per row. DistanceCache uses such an engine when the
+ * precomputation service it is given implements this interface.
+ */
+public interface DistanceTableService {
+
+    /**
+     * Computes shortest-path distances between every ordered pair of the given cities.
+     *
+     * @param roadNetwork The road network to search within.
+     * @param nodes The cities; their order defines the row and column order of the table.
+     * @return A matrix {@code table[i][j]} holding the distance from {@code nodes.get(i)} to {@code nodes.get(j)},
+     *         or Double.POSITIVE_INFINITY if unreachable.
+     */
+    default double[][] computeDistanceTable(RoadNetwork roadNetwork, List<City> nodes) {
+        return computeDistanceTable(roadNetwork, nodes, nodes);
+    }
+
+    /**
+     * Computes shortest-path distances from some cities to others, e.g. only the rows a cache is missing.
+     *
+     * @param roadNetwork The road network to search within.
+     * @param sources The cities of the rows, in row order.
+     * @param targets The cities of the columns, in column order.
+     * @return A matrix {@code table[i][j]} holding the distance from {@code sources.get(i)} to {@code targets.get(j)},
+     *         or Double.POSITIVE_INFINITY if unreachable.
+     */
+    double[][] computeDistanceTable(RoadNetwork roadNetwork, List<City> sources, List<City> targets);
+}
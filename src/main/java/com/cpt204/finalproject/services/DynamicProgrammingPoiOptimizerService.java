@@ -4,6 +4,9 @@ import com.cpt204.finalproject.model.City;
 import com.cpt204.finalproject.model.RoadNetwork;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -12,10 +15,17 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * a fixed start and end city.
  *
  * This approach is generally more efficient than permutation for a moderate number of POIs.
+ * The tables are flat float/byte arrays of K * 2^(K-1) states, about 2.5 * K * 2^K bytes,
+ * so around 22 POIs fit in a few hundred MB; larger instances are refused unless the free heap can hold them
+ * (see {@link #fitsInMemory(int)}). Float sums of whole-unit road distances are exact up to 2^24.
+ * States are filled one popcount layer at a time across the common fork-join pool.
  */
 public class DynamicProgrammingPoiOptimizerService implements PoiOptimizerService {
 
     private static final String ALGORITHM_NAME = "Dynamic Programming (Held-Karp variant)";
+    private static final int MAX_POIS = 27; // K * 2^(K-1) table slots must stay addressable by an int
+    private static final int MIN_MASKS_PER_TASK = 2048; // smaller layers run inline
+    private static final int TASKS_PER_THREAD = 4; // a few tasks per worker even out layers whose masks differ in cost
     private final RoadNetwork roadNetwork;
     private final PathfindingService fallbackPathfinder;
 
@@ -24,6 +34,27 @@ public class DynamicProgrammingPoiOptimizerService implements PoiOptimizerServic
         this.fallbackPathfinder = pathfindingServiceForNoPoiCase;
     }
 
+    /**
+     * Checks whether the Held-Karp tables for a number of POIs can be allocated right now.
+     * @param poiCount The number of intermediate POIs.
+     * @return true if the count is within MAX_POIS and the tables fit in the heap that is currently free.
+     */
+    public static boolean fitsInMemory(int poiCount) {
+        if (poiCount > MAX_POIS) {
+            return false;
+        }
+        if (poiCount <= 0) {
+            return true;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return tableBytes(poiCount) <= available;
+    }
+
+    private static long tableBytes(int K) {
+        return 5L * K * (1L << (K - 1)); // a 4-byte cost and a 1-byte parent per state
+    }
+
     /**
      * THIS IS THE OLD METHOD. It should be deprecated or adapted.
      * For now, it will delegate to a simple path calculation if POIs are empty,
@@ -66,137 +97,258 @@ public class DynamicProgrammingPoiOptimizerService implements PoiOptimizerServic
             List<City> orderedNodesInS, /* orderedNodesInS.get(i) is the city for i-th row/col in shortestDistances */
             boolean useTimeout, long timeoutMillis) {
 
+        // Resolve every city to its matrix index once; the DP itself never touches the map.
+        Integer startIndex = nodeToIndexInS.get(startCity);
+        Integer endIndex = nodeToIndexInS.get(endCity);
+        if (startIndex == null || endIndex == null) {
+            return OptimizerResult.empty(ALGORITHM_NAME + " (Error: Start/End not in S)");
+        }
+        int[] poiIndices = new int[poisToVisitOriginal == null ? 0 : poisToVisitOriginal.size()];
+        for (int k = 0; k < poiIndices.length; k++) {
+            City poi = poisToVisitOriginal.get(k);
+            Integer poiIndex = nodeToIndexInS.get(poi);
+            if (poiIndex == null) {
+                System.err.println("Error: POI " + poi.getName() + " not found in nodeToIndexInS map.");
+                return OptimizerResult.empty(ALGORITHM_NAME + " (No path found)");
+            }
+            poiIndices[k] = poiIndex;
+        }
+        return findBestPoiOrder(startIndex, endIndex, poiIndices, shortestDistances, orderedNodesInS, useTimeout, timeoutMillis);
+    }
+
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            int startIndexInS, int endIndexInS, int[] poiIndicesInS,
+            double[][] shortestDistances, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
+
         final long startTimeNanos = System.nanoTime();
         final AtomicBoolean timeoutFlag = new AtomicBoolean(false);
         final long deadlineNanos = useTimeout ? startTimeNanos + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
 
-        // Filter out start/end cities from poisToVisitOriginal to get the actual list of intermediate POIs for DP states
-        List<City> purePois = new ArrayList<>();
-        if (poisToVisitOriginal != null) {
-            for (City p : poisToVisitOriginal) {
-                if (!p.equals(startCity) && !p.equals(endCity)) {
-                    purePois.add(p);
-                }
+        // Filter out start/end cities to get the matrix indices of the intermediate POIs for DP states
+        int[] purePois = new int[poiIndicesInS.length];
+        int K = 0; // Number of intermediate POIs for DP
+        for (int poiIndex : poiIndicesInS) {
+            if (poiIndex != startIndexInS && poiIndex != endIndexInS) {
+                purePois[K++] = poiIndex;
             }
         }
 
         // Handle 0 pure POIs case: direct path from start to end
-        if (purePois.isEmpty()) {
-            Integer startIndex = nodeToIndexInS.get(startCity);
-            Integer endIndex = nodeToIndexInS.get(endCity);
-            if (startIndex == null || endIndex == null) {
-                return OptimizerResult.empty(ALGORITHM_NAME + " (Error: Start/End not in S)");
-            }
-            double dist = shortestDistances[startIndex][endIndex];
+        if (K == 0) {
+            double dist = shortestDistances[startIndexInS][endIndexInS];
             final double durationMillis = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
             return new OptimizerResult(Collections.emptyList(), dist, durationMillis, false, ALGORITHM_NAME + " (0 POIs)");
         }
 
-        int K = purePois.size(); // Number of intermediate POIs for DP
-
-        // dp[mask][i] = cost to visit POIs in mask, ending at purePois.get(i)
-        double[][] dp = new double[1 << K][K];
-        // parent[mask][i] = previous POI index in purePois list for path to purePois.get(i) with mask
-        int[][] parent = new int[1 << K][K];
-
-        for (double[] row : dp) Arrays.fill(row, Double.POSITIVE_INFINITY);
-        for (int[] row : parent) Arrays.fill(row, -1);
+        if (K > MAX_POIS) {
+            System.err.println("DP: " + K + " POIs exceed the Held-Karp table limit of " + MAX_POIS + ".");
+            return OptimizerResult.empty(ALGORITHM_NAME + " (Too many POIs)");
+        }
+        if (!fitsInMemory(K)) {
+            System.err.println("DP: the Held-Karp tables for " + K + " POIs need about " + (tableBytes(K) >> 20)
+                    + " MB, more than the free heap.");
+            return OptimizerResult.empty(ALGORITHM_NAME + " (Not enough memory)");
+        }
 
-        Integer startIndexInS = nodeToIndexInS.get(startCity);
-        if (startIndexInS == null) return OptimizerResult.empty(ALGORITHM_NAME + " (Error: Start City not in S map)");
+        // Flat tables with one slot per (last POI i, mask containing i). The bit of i is always set, so it is dropped
+        // from the mask and each POI owns a block of 2^(K-1) slots: 4 + 1 bytes per state instead of 8 + 4 plus row headers.
+        final int half = 1 << (K - 1);
+        // cost[i * half + compress(mask, i)] = cost to visit POIs in mask, ending at purePois[i]
+        float[] cost = new float[K * half];
+        // parent[...] = previous POI position in purePois on that route, or -1 when it comes straight from the start
+        byte[] parent = new byte[K * half];
+        Arrays.fill(cost, Float.POSITIVE_INFINITY);
 
         // Base cases: from startCity to each pure POI k
+        double[] fromStart = shortestDistances[startIndexInS];
         for (int k = 0; k < K; k++) {
-            if (checkTimeout(deadlineNanos, timeoutFlag)) return OptimizerResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTimeNanos) / 1_000_000.0);
-            City poiK = purePois.get(k);
-            Integer poiKIndexInS = nodeToIndexInS.get(poiK);
-            if (poiKIndexInS == null) {
-                System.err.println("Error: POI " + poiK.getName() + " not found in nodeToIndexInS map.");
-                continue; // Or handle more gracefully
+            cost[k * half] = (float) fromStart[purePois[k]]; // compress(1 << k, k) == 0
+            parent[k * half] = -1;
+        }
+
+        // Sub-matrix between pure POIs, so the inner loop reads one contiguous row per state
+        float[] between = new float[K * K];
+        for (int i = 0; i < K; i++) {
+            double[] row = shortestDistances[purePois[i]];
+            for (int j = 0; j < K; j++) {
+                between[i * K + j] = (float) row[purePois[j]];
             }
-            dp[1 << k][k] = shortestDistances[startIndexInS][poiKIndexInS];
-            // Parent for base case is implicitly the start node, so -1 (or a special value) is fine for parent[1<<k][k]
         }
 
-        // DP transitions
-        for (int mask = 1; mask < (1 << K); mask++) {
+        // DP transitions, one popcount layer at a time. A state only reads the layer below it, so the masks of a
+        // layer are split into fork-join tasks that each write nothing but their own states.
+        final int fullMask = (1 << K) - 1;
+        final int[][] binomial = binomials(K);
+        final int maxTasks = ForkJoinPool.getCommonPoolParallelism() * TASKS_PER_THREAD;
+        for (int size = 2; size <= K; size++) {
             if (checkTimeout(deadlineNanos, timeoutFlag)) return OptimizerResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTimeNanos) / 1_000_000.0);
-            for (int i = 0; i < K; i++) { // Current last POI in path for this mask is purePois.get(i)
-                if ((mask & (1 << i)) != 0) { // If purePois.get(i) is in the set specified by mask
-                    if (dp[mask][i] == Double.POSITIVE_INFINITY) continue; // Skip unreachable states
-
-                    Integer poiIIndexInS = nodeToIndexInS.get(purePois.get(i));
-                    if (poiIIndexInS == null) continue; // Should not happen if base cases are set up
-
-                    for (int j = 0; j < K; j++) { // Next POI to visit is purePois.get(j)
-                        if ((mask & (1 << j)) == 0) { // If purePois.get(j) is NOT in the mask yet
-                            Integer poiJIndexInS = nodeToIndexInS.get(purePois.get(j));
-                            if (poiJIndexInS == null) continue;
-
-                            double distItoJ = shortestDistances[poiIIndexInS][poiJIndexInS];
-                            if (distItoJ == Double.POSITIVE_INFINITY) continue; // Cannot go from i to j
-
-                            int nextMask = mask | (1 << j);
-                            if (dp[mask][i] + distItoJ < dp[nextMask][j]) {
-                                dp[nextMask][j] = dp[mask][i] + distItoJ;
-                                parent[nextMask][j] = i; // purePois.get(i) is predecessor of purePois.get(j)
-                            }
-                        }
-                    }
-                }
+            int layerSize = binomial[K][size];
+            int taskCount = Math.max(1, Math.min(maxTasks, layerSize / MIN_MASKS_PER_TASK));
+            List<LayerTask> tasks = new ArrayList<>(taskCount);
+            for (int t = 0; t < taskCount; t++) {
+                int from = (int) ((long) layerSize * t / taskCount);
+                int to = (int) ((long) layerSize * (t + 1) / taskCount);
+                tasks.add(new LayerTask(cost, parent, between, K, half,
+                        nthMaskWithBitCount(from, size, binomial), to - from, deadlineNanos, timeoutFlag));
+            }
+            if (taskCount == 1) {
+                tasks.get(0).compute(); // not worth a fork for a small layer
+            } else {
+                ForkJoinTask.invokeAll(tasks);
             }
         }
+        if (timeoutFlag.get()) return OptimizerResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTimeNanos) / 1_000_000.0);
 
         // Find best path to endCity from all states where all K POIs are visited
-        double minTotalDistance = Double.POSITIVE_INFINITY;
-        int lastPurePoiIndex = -1; // Index in purePois list
-        int finalMask = (1 << K) - 1;
-
-        Integer endIndexInS = nodeToIndexInS.get(endCity);
-        if (endIndexInS == null) return OptimizerResult.empty(ALGORITHM_NAME + " (Error: End City not in S map)");
-
-        for (int k = 0; k < K; k++) { // k is the index of the last pure POI visited
-            if (checkTimeout(deadlineNanos, timeoutFlag)) return OptimizerResult.timedOut(ALGORITHM_NAME, (System.nanoTime() - startTimeNanos) / 1_000_000.0);
-            if (dp[finalMask][k] == Double.POSITIVE_INFINITY) continue;
+        double bestTableDistance = Double.POSITIVE_INFINITY;
+        int lastPurePoiIndex = -1; // Position in purePois
+        for (int k = 0; k < K; k++) { // k is the position of the last pure POI visited
+            float costK = cost[k * half + compress(fullMask, k)];
+            double distKToEnd = shortestDistances[purePois[k]][endIndexInS];
+            if (costK == Float.POSITIVE_INFINITY || distKToEnd == Double.POSITIVE_INFINITY) continue;
 
-            Integer poiKIndexInS = nodeToIndexInS.get(purePois.get(k));
-            if (poiKIndexInS == null) continue;
-
-            double distKToEnd = shortestDistances[poiKIndexInS][endIndexInS];
-            if (distKToEnd == Double.POSITIVE_INFINITY) continue;
-
-            if (dp[finalMask][k] + distKToEnd < minTotalDistance) {
-                minTotalDistance = dp[finalMask][k] + distKToEnd;
+            if (costK + distKToEnd < bestTableDistance) {
+                bestTableDistance = costK + distKToEnd;
                 lastPurePoiIndex = k;
             }
         }
 
-        if (lastPurePoiIndex == -1 || minTotalDistance == Double.POSITIVE_INFINITY) {
+        if (lastPurePoiIndex == -1) {
             final double durationMillisOnFailure = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
             if(timeoutFlag.get()) return OptimizerResult.timedOut(ALGORITHM_NAME, durationMillisOnFailure);
             System.err.println("DP: Could not find a path visiting all POIs and reaching the end city.");
             return OptimizerResult.empty(ALGORITHM_NAME + " (No path found)");
         }
 
-        // Reconstruct path (list of purePois in order)
-        List<City> bestPurePoiOrder = new ArrayList<>();
+        // Reconstruct path (positions in purePois, last POI first)
+        int[] reversedOrder = new int[K];
         int currentPurePoiIndex = lastPurePoiIndex;
-        int currentMask = finalMask;
-        while (currentPurePoiIndex != -1) {
-            bestPurePoiOrder.add(purePois.get(currentPurePoiIndex));
-            int prevPurePoiIndex = parent[currentMask][currentPurePoiIndex];
+        int currentMask = fullMask;
+        for (int n = 0; currentPurePoiIndex != -1; n++) {
+            reversedOrder[n] = currentPurePoiIndex;
+            int prevPurePoiIndex = parent[currentPurePoiIndex * half + compress(currentMask, currentPurePoiIndex)];
             currentMask ^= (1 << currentPurePoiIndex); // Remove current POI from mask
             currentPurePoiIndex = prevPurePoiIndex;
         }
-        Collections.reverse(bestPurePoiOrder);
+        // The table only ranks routes; the reported length is summed in double precision from the matrix
+        List<City> bestPurePoiOrder = new ArrayList<>(K);
+        double minTotalDistance = 0;
+        int previousInS = startIndexInS;
+        for (int n = K - 1; n >= 0; n--) {
+            int poiInS = purePois[reversedOrder[n]];
+            bestPurePoiOrder.add(orderedNodesInS.get(poiInS));
+            minTotalDistance += shortestDistances[previousInS][poiInS];
+            previousInS = poiInS;
+        }
+        minTotalDistance += shortestDistances[previousInS][endIndexInS];
 
         final double durationMillis = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
-        if (timeoutFlag.get()) {
-            return OptimizerResult.timedOut(ALGORITHM_NAME, durationMillis);
-        }
         return new OptimizerResult(bestPurePoiOrder, minTotalDistance, durationMillis, false, ALGORITHM_NAME);
     }
 
+    /**
+     * Slot of {@code mask} within the block of its last POI {@code i}: the mask with bit i removed,
+     * so the 2^K masks map onto 2^(K-1) slots without gaps.
+     */
+    private static int compress(int mask, int i) {
+        return ((mask >>> (i + 1)) << i) | (mask & ((1 << i) - 1));
+    }
+
+    /**
+     * Pascal's triangle up to n: binomial[n][k] = n choose k.
+     */
+    private static int[][] binomials(int n) {
+        int[][] binomial = new int[n + 1][n + 1];
+        for (int row = 0; row <= n; row++) {
+            binomial[row][0] = 1;
+            for (int k = 1; k <= row; k++) {
+                binomial[row][k] = binomial[row - 1][k - 1] + binomial[row - 1][k];
+            }
+        }
+        return binomial;
+    }
+
+    /**
+     * The mask with {@code bits} set bits at position {@code rank} in increasing numeric order, the order in which
+     * Gosper's hack walks them: the highest bit is the largest p with C(p, bits) <= rank, and so on downwards.
+     */
+    private static int nthMaskWithBitCount(int rank, int bits, int[][] binomial) {
+        int mask = 0;
+        for (int p = binomial.length - 2; bits > 0; p--) {
+            if (binomial[p][bits] <= rank) {
+                rank -= binomial[p][bits];
+                mask |= 1 << p;
+                bits--;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Fills the states of {@code count} consecutive masks of one popcount layer, pull-style:
+     * cost(j, mask) = min over i in mask - {j} of cost(i, mask - {j}) + between(i, j).
+     */
+    private static final class LayerTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final float[] cost;
+        private final byte[] parent;
+        private final float[] between;
+        private final int K;
+        private final int half;
+        private final int firstMask;
+        private final int count;
+        private final long deadlineNanos;
+        private final AtomicBoolean timeoutFlag;
+
+        LayerTask(float[] cost, byte[] parent, float[] between, int K, int half,
+                  int firstMask, int count, long deadlineNanos, AtomicBoolean timeoutFlag) {
+            this.cost = cost;
+            this.parent = parent;
+            this.between = between;
+            this.K = K;
+            this.half = half;
+            this.firstMask = firstMask;
+            this.count = count;
+            this.deadlineNanos = deadlineNanos;
+            this.timeoutFlag = timeoutFlag;
+        }
+
+        @Override
+        protected void compute() {
+            int mask = firstMask;
+            for (int n = 0; n < count; n++) {
+                if ((n & 0x3FF) == 0x3FF && (timeoutFlag.get() || System.nanoTime() > deadlineNanos)) {
+                    timeoutFlag.set(true);
+                    return;
+                }
+                for (int jBits = mask; jBits != 0; jBits &= jBits - 1) {
+                    int j = Integer.numberOfTrailingZeros(jBits); // Last POI of this state is purePois[j]
+                    int previousMask = mask ^ (1 << j);
+                    float best = Float.POSITIVE_INFINITY;
+                    int bestI = -1;
+                    for (int iBits = previousMask; iBits != 0; iBits &= iBits - 1) {
+                        int i = Integer.numberOfTrailingZeros(iBits); // Predecessor purePois[i], visited last before j
+                        float candidate = cost[i * half + compress(previousMask, i)] + between[i * K + j];
+                        if (candidate < best) {
+                            best = candidate;
+                            bestI = i;
+                        }
+                    }
+                    int slot = j * half + compress(mask, j);
+                    cost[slot] = best;
+                    parent[slot] = (byte) bestI;
+                }
+                // Gosper's hack: the next larger mask with the same number of set bits
+                int lowest = mask & -mask;
+                int ripple = mask + lowest;
+                mask = (((ripple ^ mask) >>> 2) / lowest) | ripple;
+            }
+        }
+    }
+
     /** Helper to check timeout */
     private boolean checkTimeout(long deadlineNanos, AtomicBoolean timeoutOccurred) {
         if (System.nanoTime() > deadlineNanos) {
@@ -0,0 +1,122 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadChange;
+
+/**
+ * Repairs a cached single-source result ({@code dist} row and {@code prev} tree) after one road update,
+ * in the style of dynamic Dijkstra (Ramalingam-Reps), touching only the part of the tree the update affects.
+ * <ul>
+ *   <li>Decrease or addition of u -> v: if it shortens the way to v, v is re-seeded and a Dijkstra runs from v;
+ *       it only ever settles nodes whose distance improves.</li>
+ *   <li>Increase or removal of u -> v: if it is the tree edge into v, the subtree under v is invalidated,
+ *       each subtree node is re-seeded from its best in-road leaving the unaffected part of the tree,
+ *       and a Dijkstra settles the subtree again.</li>
+ * </ul>
+ * One instance serves any number of rows for the same change; it is not thread-safe.
+ */
+final class IncrementalShortestPathRepair {
+    private final RoadChange change;
+    private final CsrGraph graph; // outgoing roads of the changed network
+    private final CsrGraph reverseGraph; // incoming roads of the changed network
+    private final IndexedMinHeap heap;
+    private final boolean[] inSubtree;
+    private final int[] subtree;
+
+    IncrementalShortestPathRepair(RoadChange change) {
+        this.change = change;
+        this.graph = change.getCurrent().getAdjacency();
+        this.reverseGraph = change.getCurrent().getReverseAdjacency();
+        int numCities = change.getCurrent().getNumberOfCities();
+        this.heap = new IndexedMinHeap(numCities);
+        this.inSubtree = new boolean[numCities];
+        this.subtree = new int[numCities];
+    }
+
+    /**
+     * Updates the row and tree in place so they describe the changed network.
+     * @param dist Distances from the source on the previous network; overwritten.
+     * @param prev The matching shortest-path tree; overwritten.
+     * @return The number of nodes whose entries were recomputed (0 if the change does not affect this source).
+     */
+    int repair(double[] dist, int[] prev) {
+        int from = change.getFromIndex();
+        int to = change.getToIndex();
+        if (dist[from] == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        if (!change.isIncrease()) {
+            double candidate = dist[from] + change.getNewDistance();
+            if (!(candidate < dist[to])) {
+                return 0;
+            }
+            dist[to] = candidate;
+            prev[to] = from;
+            heap.insertOrDecrease(to, candidate);
+            return settle(dist, prev);
+        }
+        if (prev[to] != from) {
+            return 0; // the road is not on the tree, so every tree path keeps its length
+        }
+
+        // Collect the subtree under the road's end; tree children of x are out-neighbours y with prev[y] == x.
+        int size = 0;
+        subtree[size++] = to;
+        inSubtree[to] = true;
+        for (int i = 0; i < size; i++) {
+            int x = subtree[i];
+            for (int e = graph.edgeStart(x); e < graph.edgeEnd(x); e++) {
+                int y = graph.target(e);
+                if (prev[y] == x && !inSubtree[y]) {
+                    inSubtree[y] = true;
+                    subtree[size++] = y;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            dist[subtree[i]] = Double.POSITIVE_INFINITY;
+            prev[subtree[i]] = -1;
+        }
+        // Re-seed every subtree node from its best road entering from outside the subtree.
+        for (int i = 0; i < size; i++) {
+            int x = subtree[i];
+            for (int e = reverseGraph.edgeStart(x); e < reverseGraph.edgeEnd(x); e++) {
+                int w = reverseGraph.target(e);
+                if (!inSubtree[w] && dist[w] + reverseGraph.weight(e) < dist[x]) {
+                    dist[x] = dist[w] + reverseGraph.weight(e);
+                    prev[x] = w;
+                }
+            }
+            if (dist[x] != Double.POSITIVE_INFINITY) {
+                heap.insertOrDecrease(x, dist[x]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            inSubtree[subtree[i]] = false;
+        }
+        settle(dist, prev);
+        return size;
+    }
+
+    /**
+     * Plain Dijkstra from the seeded heap; only nodes whose distance improves are ever queued.
+     */
+    private int settle(double[] dist, int[] prev) {
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled++;
+            double du = dist[u];
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.target(e);
+                double candidate = du + graph.weight(e);
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    prev[v] = u;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        return settled;
+    }
+}
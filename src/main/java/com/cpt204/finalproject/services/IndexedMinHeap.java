@@ -0,0 +1,163 @@
+package com.cpt204.finalproject.services;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over node indices {@code 0..capacity-1} keyed by primitive doubles.
+ * Every node has a fixed slot in a position array, which gives O(log n) decrease-key
+ * without boxing. Intended to be reused across searches via {@link #clear()}.
+ */
+final class IndexedMinHeap {
+    private final int[] heap; // heap[i] = node stored at heap position i
+    private final int[] position; // position[node] = index in heap, or -1 if absent
+    private final double[] keys; // keys[node] = current priority of node
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return position[node] >= 0;
+    }
+
+    /**
+     * Inserts the node, or lowers its key if it is already queued with a larger key.
+     * @return true if the heap changed.
+     */
+    boolean insertOrDecrease(int node, double key) {
+        int pos = position[node];
+        if (pos < 0) {
+            heap[size] = node;
+            position[node] = size;
+            keys[node] = key;
+            siftUp(size++);
+            return true;
+        }
+        if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(pos);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts the node or moves it to the new key, whether that key is smaller or larger.
+     */
+    void update(int node, double key) {
+        int pos = position[node];
+        if (pos < 0) {
+            insertOrDecrease(node, key);
+            return;
+        }
+        double old = keys[node];
+        keys[node] = key;
+        if (key < old) {
+            siftUp(pos);
+        } else if (key > old) {
+            siftDown(pos);
+        }
+    }
+
+    /**
+     * Removes the node if present.
+     */
+    void remove(int node) {
+        int pos = position[node];
+        if (pos < 0) {
+            return;
+        }
+        int last = heap[--size];
+        position[node] = -1;
+        if (pos < size) {
+            heap[pos] = last;
+            position[last] = pos;
+            siftUp(pos);
+            siftDown(position[last]);
+        }
+    }
+
+    int peekMin() {
+        return heap[0];
+    }
+
+    double peekMinKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[heap[0]];
+    }
+
+    double key(int node) {
+        return keys[node];
+    }
+
+    int pollMin() {
+        int min = heap[0];
+        position[min] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Empties the heap in O(size), leaving it ready for another search.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = node;
+        position[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            position[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = node;
+        position[node] = pos;
+    }
+}
@@ -0,0 +1,148 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.CsrGraph;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.Arrays;
+
+/**
+ * Preprocessed landmark distance tables for ALT (A*, Landmarks, Triangle inequality) searches.
+ * Needs only graph distances, so it works without city coordinates.
+ * For every landmark L it stores d(L, v) and d(v, L) for all cities v in flat primitive arrays
+ * ({@code table[l * V + v]}), giving lower bounds d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L).
+ */
+public final class LandmarkIndex {
+    private final RoadNetwork network;
+    private final int numCities;
+    private final int[] landmarks;
+    private final double[] fromLandmark; // fromLandmark[l * V + v] = d(landmark l, v)
+    private final double[] toLandmark; // toLandmark[l * V + v] = d(v, landmark l)
+
+    private LandmarkIndex(RoadNetwork network, int[] landmarks, double[] fromLandmark, double[] toLandmark) {
+        this.network = network;
+        this.numCities = network.getNumberOfCities();
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Selects up to {@code landmarkCount} landmarks by farthest-point selection and computes their tables.
+     * The first landmark is the city with the most roads; each next one is the reachable city farthest from
+     * all landmarks chosen so far, which spreads landmarks towards the periphery where bounds are tightest.
+     *
+     * @param network The road network to preprocess.
+     * @param landmarkCount The desired number of landmarks (K), capped at the number of cities.
+     * @return The landmark index for {@code network}.
+     */
+    public static LandmarkIndex build(RoadNetwork network, int landmarkCount) {
+        if (landmarkCount <= 0) {
+            throw new IllegalArgumentException("Landmark count must be positive.");
+        }
+        final int V = network.getNumberOfCities();
+        final int K = Math.min(landmarkCount, V);
+        final CsrGraph forward = network.getAdjacency();
+        final CsrGraph backward = network.getReverseAdjacency();
+
+        int[] chosen = new int[K];
+        double[] fromTable = new double[K * V];
+        double[] toTable = new double[K * V];
+        double[] row = new double[V];
+        double[] minDistanceToChosen = new double[V];
+        Arrays.fill(minDistanceToChosen, Double.POSITIVE_INFINITY);
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+
+        int next = 0;
+        for (int v = 1; v < V; v++) {
+            if (forward.outDegree(v) > forward.outDegree(next)) {
+                next = v;
+            }
+        }
+        int count = 0;
+        while (count < K && next >= 0) {
+            chosen[count] = next;
+            BinaryHeapDijkstraService.computeAllDistances(forward, next, row, null, heap);
+            System.arraycopy(row, 0, fromTable, count * V, V);
+            BinaryHeapDijkstraService.computeAllDistances(backward, next, row, null, heap);
+            System.arraycopy(row, 0, toTable, count * V, V);
+            count++;
+
+            // Farthest reachable city from the chosen set; unreachable cities are skipped since they give no bounds.
+            next = -1;
+            double farthest = 0;
+            for (int v = 0; v < V; v++) {
+                double d = fromTable[(count - 1) * V + v];
+                if (d < minDistanceToChosen[v]) {
+                    minDistanceToChosen[v] = d;
+                }
+                if (minDistanceToChosen[v] != Double.POSITIVE_INFINITY && minDistanceToChosen[v] > farthest) {
+                    farthest = minDistanceToChosen[v];
+                    next = v;
+                }
+            }
+        }
+        if (count < K) {
+            int[] trimmedLandmarks = Arrays.copyOf(chosen, count);
+            return new LandmarkIndex(network, trimmedLandmarks,
+                    Arrays.copyOf(fromTable, count * V), Arrays.copyOf(toTable, count * V));
+        }
+        return new LandmarkIndex(network, chosen, fromTable, toTable);
+    }
+
+    /**
+     * @return The network these tables were computed for.
+     */
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return The number of landmarks actually selected.
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * @param i The landmark slot.
+     * @return The city index of the i-th landmark.
+     */
+    public int getLandmark(int i) {
+        return landmarks[i];
+    }
+
+    /**
+     * Computes the ALT lower bound on d(v, t) as the maximum triangle-inequality bound over all landmarks.
+     * Returns Double.POSITIVE_INFINITY when the tables prove that {@code t} is unreachable from {@code v}.
+     *
+     * @param v The city index being estimated.
+     * @param t The target city index.
+     * @return An admissible and consistent lower bound on the distance from v to t.
+     */
+    public double lowerBound(int v, int t) {
+        double best = 0;
+        for (int l = 0, base = 0; l < landmarks.length; l++, base += numCities) {
+            double fromV = fromLandmark[base + v];
+            double fromT = fromLandmark[base + t];
+            if (fromV != Double.POSITIVE_INFINITY) {
+                if (fromT == Double.POSITIVE_INFINITY) {
+                    return Double.POSITIVE_INFINITY; // L reaches v but not t, so v cannot reach t
+                }
+                if (fromT - fromV > best) {
+                    best = fromT - fromV;
+                }
+            }
+            double vTo = toLandmark[base + v];
+            double tTo = toLandmark[base + t];
+            if (tTo != Double.POSITIVE_INFINITY) {
+                if (vTo == Double.POSITIVE_INFINITY) {
+                    return Double.POSITIVE_INFINITY; // t reaches L but v does not, so v cannot reach t
+                }
+                if (vTo - tTo > best) {
+                    best = vTo - tTo;
+                }
+            }
+        }
+        return best;
+    }
+}
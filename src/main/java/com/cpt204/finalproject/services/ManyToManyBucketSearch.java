@@ -0,0 +1,110 @@
+package com.cpt204.finalproject.services;
+
+import java.util.Arrays;
+
+/**
+ * Bucket-based many-to-many search on a {@link ContractionHierarchy}.
+ * One backward upward search per target drops (target, distance) entries into buckets at every node it settles;
+ * one forward upward search per source then scans the buckets of the nodes it settles.
+ * The full |S| x |T| table costs |S| + |T| small upward searches instead of |S| full single-source searches.
+ */
+final class ManyToManyBucketSearch {
+
+    private ManyToManyBucketSearch() {
+    }
+
+    /**
+     * @param ch The hierarchy to search.
+     * @param sources City indices of the rows.
+     * @param targets City indices of the columns.
+     * @return {@code table[i][j]} = distance from sources[i] to targets[j].
+     */
+    static double[][] compute(ContractionHierarchy ch, int[] sources, int[] targets) {
+        final int V = ch.getNetwork().getNumberOfCities();
+        double[][] table = new double[sources.length][targets.length];
+        for (double[] row : table) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+
+        double[] dist = new double[V];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] touched = new int[V];
+        IndexedMinHeap heap = new IndexedMinHeap(V);
+
+        // Backward phase: bucket entries are linked lists threaded through flat arrays, headed at each node.
+        int[] bucketHead = new int[V];
+        Arrays.fill(bucketHead, -1);
+        int[] entryNext = new int[64];
+        int[] entryTarget = new int[64];
+        double[] entryDistance = new double[64];
+        int entryCount = 0;
+
+        for (int j = 0; j < targets.length; j++) {
+            int touchedCount = 0;
+            dist[targets[j]] = 0;
+            touched[touchedCount++] = targets[j];
+            heap.insertOrDecrease(targets[j], 0);
+            while (!heap.isEmpty()) {
+                int u = heap.pollMin();
+                double du = dist[u];
+                if (entryCount == entryNext.length) {
+                    entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+                    entryTarget = Arrays.copyOf(entryTarget, entryCount * 2);
+                    entryDistance = Arrays.copyOf(entryDistance, entryCount * 2);
+                }
+                entryTarget[entryCount] = j;
+                entryDistance[entryCount] = du;
+                entryNext[entryCount] = bucketHead[u];
+                bucketHead[u] = entryCount++;
+                for (int e = ch.downStart(u); e < ch.downEnd(u); e++) {
+                    int v = ch.downTarget(e);
+                    double candidate = du + ch.downWeight(e);
+                    if (candidate < dist[v]) {
+                        if (dist[v] == Double.POSITIVE_INFINITY) {
+                            touched[touchedCount++] = v;
+                        }
+                        dist[v] = candidate;
+                        heap.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                dist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        // Forward phase: every settled node contributes its bucket to the source's row.
+        for (int i = 0; i < sources.length; i++) {
+            double[] row = table[i];
+            int touchedCount = 0;
+            dist[sources[i]] = 0;
+            touched[touchedCount++] = sources[i];
+            heap.insertOrDecrease(sources[i], 0);
+            while (!heap.isEmpty()) {
+                int u = heap.pollMin();
+                double du = dist[u];
+                for (int entry = bucketHead[u]; entry != -1; entry = entryNext[entry]) {
+                    double candidate = du + entryDistance[entry];
+                    if (candidate < row[entryTarget[entry]]) {
+                        row[entryTarget[entry]] = candidate;
+                    }
+                }
+                for (int e = ch.upStart(u); e < ch.upEnd(u); e++) {
+                    int v = ch.upTarget(e);
+                    double candidate = du + ch.upWeight(e);
+                    if (candidate < dist[v]) {
+                        if (dist[v] == Double.POSITIVE_INFINITY) {
+                            touched[touchedCount++] = v;
+                        }
+                        dist[v] = candidate;
+                        heap.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                dist[touched[t]] = Double.POSITIVE_INFINITY;
+            }
+        }
+        return table;
+    }
+}
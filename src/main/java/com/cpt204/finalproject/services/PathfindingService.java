@@ -31,6 +31,23 @@ public interface PathfindingService {
         long timeoutMillis
     );
 
+    /**
+     * Index-based variant of {@link #findShortestPath(RoadNetwork, City, City, List, boolean, long)} for hot paths
+     * that already work with city indices ({@link City#getId()}); engines override it to skip all City lookups.
+     *
+     * @param roadNetwork The road network to search within.
+     * @param startIndex The index of the starting city.
+     * @param endIndex The index of the destination city, or -1 for a full single-source search (distArray result).
+     * @param useTimeout Whether to apply a timeout to the pathfinding algorithm.
+     * @param timeoutMillis The timeout value in milliseconds, if useTimeout is true.
+     * @return A PathResult object, as for the City-based method.
+     */
+    default PathResult findShortestPath(RoadNetwork roadNetwork, int startIndex, int endIndex, boolean useTimeout, long timeoutMillis) {
+        City startCity = roadNetwork.getCityByIndex(startIndex);
+        City endCity = endIndex < 0 ? null : roadNetwork.getCityByIndex(endIndex);
+        return findShortestPath(roadNetwork, startCity, endCity, List.of(), useTimeout, timeoutMillis);
+    }
+
     // Inner class or record to represent the result of a pathfinding operation
     // This should be defined according to what information needs to be returned.
     // For example: list of cities in path, total distance, calculation time, whether timeout occurred.
@@ -38,20 +55,27 @@ public interface PathfindingService {
         private final List<City> path;
         private final double totalDistance; // Distance to the specific destination city
         private final double[] distArray; // Distances from source to all other cities in the network
+        private final int[] prevArray; // Shortest-path tree predecessors matching distArray, null if not kept
         private final double calculationTimeMillis;
         private final boolean timedOut;
         private final String algorithmName;
 
-        // Updated constructor to include distArray
-        public PathResult(List<City> path, double totalDistance, double[] distArray, double calculationTimeMillis, boolean timedOut, String algorithmName) {
+        // Constructor for single-source results that also expose the shortest-path tree (prev[v] = predecessor of v)
+        public PathResult(List<City> path, double totalDistance, double[] distArray, int[] prevArray, double calculationTimeMillis, boolean timedOut, String algorithmName) {
             this.path = path;
             this.totalDistance = totalDistance;
             this.distArray = distArray; // Can be null if not computed or not applicable
+            this.prevArray = prevArray; // Only meaningful together with distArray
             this.calculationTimeMillis = calculationTimeMillis;
             this.timedOut = timedOut;
             this.algorithmName = algorithmName;
         }
 
+        // Updated constructor to include distArray
+        public PathResult(List<City> path, double totalDistance, double[] distArray, double calculationTimeMillis, boolean timedOut, String algorithmName) {
+            this(path, totalDistance, distArray, null, calculationTimeMillis, timedOut, algorithmName);
+        }
+
         // Constructor for services that might not compute the full distArray (e.g., if only target distance is needed)
         // Or if PathResult is used by optimizers that only care about a single distance value from a precomputed matrix
         public PathResult(List<City> path, double totalDistance, double calculationTimeMillis, boolean timedOut, String algorithmName) {
@@ -71,6 +95,11 @@ public interface PathfindingService {
             return distArray;
         }
 
+        // Getter for the predecessor array of the full single-source search, or null
+        public int[] getPrevArray() {
+            return prevArray;
+        }
+
         public double getCalculationTimeMillis() {
             return calculationTimeMillis;
         }
@@ -6,17 +6,24 @@ import com.cpt204.finalproject.model.RoadNetwork;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements PoiOptimizerService using a permutation-based (brute-force) approach.
  * It calculates the distance for every possible order of visiting POIs and selects the shortest.
- * This is computationally expensive and suitable only for a small number of POIs.
+ * Orders are scored against a primitive distance matrix (precomputed, or built with one search per leg),
+ * so a permutation costs a few array reads. From {@value #PARALLEL_MIN_POIS} POIs the orders are split across
+ * fork-join tasks that share a pruning bound; still O(n!) in the worst case.
  */
 public class PermutationPoiOptimizerService implements PoiOptimizerService {
 
     private static final String ALGORITHM_NAME = "Permutation (Brute-Force)";
+    private static final int PARALLEL_MIN_POIS = 9; // below this the sequential enumeration finishes in milliseconds
     private final PathfindingService pathfindingService;
 
     public PermutationPoiOptimizerService(PathfindingService pathfindingService) {
@@ -57,137 +64,325 @@ public class PermutationPoiOptimizerService implements PoiOptimizerService {
         }
 
         List<City> currentPois = new ArrayList<>(poisToVisit);
-        AtomicReference<Double> minTotalDistance = new AtomicReference<>(Double.POSITIVE_INFINITY);
-        AtomicReference<List<City>> bestPoiOrder = new AtomicReference<>(null);
 
         // Handle empty POI list separately using PathfindingService
         if (currentPois.isEmpty()) {
             PathfindingService.PathResult directPathResult = pathfindingService.findShortestPath(roadNetwork, startCity, endCity, Collections.emptyList(), false, 0);
             long endTime = System.currentTimeMillis();
-            // Check if pathfinding itself resulted in an issue (e.g., cities not found, though handled above)
-            if (directPathResult.getTotalDistance() == Double.POSITIVE_INFINITY && !directPathResult.getPath().isEmpty()) {
-                 // Path is empty, but distance is infinity means no path. If path is not empty but distance is infinity, that's an issue.
-                 // However, PathResult usually returns empty path for infinity distance.
-            }
             if (directPathResult.isTimedOut()) { // Should not happen with current Dijkstra, but good practice
                  return OptimizerResult.timedOut(ALGORITHM_NAME, endTime - startTime);
             }
             return new OptimizerResult(Collections.emptyList(), directPathResult.getTotalDistance(), endTime - startTime, false, ALGORITHM_NAME);
         }
 
-        // Generate permutations using Heap's algorithm 
+        // Every leg a permutation can use is searched once: start -> POI, POI -> POI and POI -> end.
+        // Nodes are [start, POI 1..n, end], so each listed POI keeps its own row even if cities repeat.
         int n = currentPois.size();
-        int[] c = new int[n];
-        // Initialize c with zeros
-        for (int k=0; k < n; k++) c[k] = 0;
-        
-        List<City> currentPermutation = new ArrayList<>(currentPois); // Initial permutation
+        List<City> nodes = new ArrayList<>(n + 2);
+        nodes.add(startCity);
+        nodes.addAll(currentPois);
+        nodes.add(endCity);
+        double[][] legDistances = new double[n + 2][n + 2];
+        for (int from = 0; from <= n; from++) {
+            for (int to = 1; to <= n + 1; to++) {
+                if (from == to || (from == 0 && to == n + 1)) {
+                    continue; // self legs are never used, and start -> end only matters without POIs
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    timeoutOccurred.set(true);
+                    return OptimizerResult.timedOut(ALGORITHM_NAME, System.currentTimeMillis() - startTime);
+                }
+                PathfindingService.PathResult segmentResult = pathfindingService.findShortestPath(roadNetwork, nodes.get(from), nodes.get(to), Collections.emptyList(), false, 0);
+                legDistances[from][to] = segmentResult.isTimedOut() ? Double.POSITIVE_INFINITY : segmentResult.getTotalDistance();
+            }
+        }
+        int[] poiIndices = new int[n];
+        for (int k = 0; k < n; k++) {
+            poiIndices[k] = k + 1;
+        }
+        long remaining = useTimeout ? Math.max(0, deadline - System.currentTimeMillis()) : timeoutMillis;
+        return findBestPoiOrder(0, n + 1, poiIndices, legDistances, nodes, useTimeout, remaining);
+    }
+
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            City start, City end, List<City> poisToVisit,
+            Set<City> S, double[][] shortestDistances, Map<City, Integer> nodeToIndexInS, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
+        Integer startIndex = nodeToIndexInS.get(start);
+        Integer endIndex = nodeToIndexInS.get(end);
+        if (startIndex == null || endIndex == null) {
+            return OptimizerResult.empty(ALGORITHM_NAME + " (Error: Start/End not in S)");
+        }
+        int[] poiIndices = new int[poisToVisit == null ? 0 : poisToVisit.size()];
+        for (int k = 0; k < poiIndices.length; k++) {
+            Integer poiIndex = nodeToIndexInS.get(poisToVisit.get(k));
+            if (poiIndex == null) {
+                System.err.println("Error: POI " + poisToVisit.get(k).getName() + " not found in nodeToIndexInS map.");
+                return OptimizerResult.empty(ALGORITHM_NAME);
+            }
+            poiIndices[k] = poiIndex;
+        }
+        return findBestPoiOrder(startIndex, endIndex, poiIndices, shortestDistances, orderedNodesInS, useTimeout, timeoutMillis);
+    }
+
+    /**
+     * Enumerates every order of the POIs with Heap's algorithm against the precomputed matrix.
+     * Heap's algorithm only swaps inside positions 0..i of the permutation array, so the array is read back to front
+     * (route position p holds element n-1-p) and the route keeps its first n-1-i legs; the prefix sums of those legs
+     * are reused and only the tail is re-added, which costs fewer than e additions per permutation on average.
+     */
+    @Override
+    public OptimizerResult findBestPoiOrder(
+            int startIndexInS, int endIndexInS, int[] poiIndicesInS,
+            double[][] shortestDistances, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
 
-        calculatePermutationDistance(roadNetwork, startCity, endCity, currentPermutation, minTotalDistance, bestPoiOrder, deadline, timeoutOccurred);
+        final long startTimeNanos = System.nanoTime();
+        final long deadlineNanos = useTimeout ? startTimeNanos + timeoutMillis * 1_000_000 : Long.MAX_VALUE;
 
-        // Heap's algorithm implementation adapted for timeout checking
-        int i = 0;
-        while (i < n && !timeoutOccurred.get()) {
-            if (System.currentTimeMillis() > deadline) {
-                timeoutOccurred.set(true);
-                break;
+        // Local ids: 0 = start, 1..n = POIs (start/end excluded), n + 1 = end
+        int[] pois = new int[poiIndicesInS.length];
+        int n = 0;
+        for (int poiIndex : poiIndicesInS) {
+            if (poiIndex != startIndexInS && poiIndex != endIndexInS) {
+                pois[n++] = poiIndex;
+            }
+        }
+        if (n == 0) {
+            double dist = shortestDistances[startIndexInS][endIndexInS];
+            return new OptimizerResult(Collections.emptyList(), dist, (System.nanoTime() - startTimeNanos) / 1_000_000.0, false, ALGORITHM_NAME);
+        }
+        final int width = n + 2;
+        double[] legs = new double[width * width]; // legs[a * width + b] = distance between local ids a and b
+        for (int a = 0; a < width; a++) {
+            int rowInS = a == 0 ? startIndexInS : a == n + 1 ? endIndexInS : pois[a - 1];
+            for (int b = 0; b < width; b++) {
+                int columnInS = b == 0 ? startIndexInS : b == n + 1 ? endIndexInS : pois[b - 1];
+                legs[a * width + b] = shortestDistances[rowInS][columnInS];
             }
+        }
+
+        Best best = n >= PARALLEL_MIN_POIS
+                ? searchInParallel(legs, n, deadlineNanos)
+                : enumerateSequentially(legs, n, deadlineNanos);
+
+        final double durationMillis = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+        if (best.timedOut) {
+            System.out.println("Warning: Permutation POI optimization timed out after " + durationMillis + " ms.");
+        }
+        if (best.distance == Double.POSITIVE_INFINITY) {
+            // No path found for any permutation evaluated
+            return best.timedOut ? OptimizerResult.timedOut(ALGORITHM_NAME, durationMillis) : OptimizerResult.empty(ALGORITHM_NAME);
+        }
+        List<City> bestOrder = new ArrayList<>(n);
+        for (int localId : best.route) {
+            bestOrder.add(orderedNodesInS.get(pois[localId - 1]));
+        }
+        // Even if timed out, return the best found so far
+        return new OptimizerResult(bestOrder, best.distance, durationMillis, best.timedOut, ALGORITHM_NAME);
+    }
+
+    /** The best route found by a search: local POI ids in visiting order. */
+    private static final class Best {
+        double distance = Double.POSITIVE_INFINITY;
+        int[] route;
+        boolean timedOut;
+    }
+
+    /**
+     * Heap's algorithm over every order; see {@link #findBestPoiOrder(int, int, int[], double[][], List, boolean, long)}.
+     * @param legs Flat leg table over local ids (0 = start, 1..n = POIs, n + 1 = end).
+     */
+    private static Best enumerateSequentially(double[] legs, int n, long deadlineNanos) {
+        final int width = n + 2;
+        final int endId = n + 1;
+        int[] permutation = new int[n]; // local ids; route position p visits permutation[n - 1 - p]
+        for (int k = 0; k < n; k++) {
+            permutation[k] = k + 1;
+        }
+        double[] prefix = new double[n]; // prefix[p] = distance from start through route position p
+        updatePrefix(legs, width, permutation, prefix, 0);
+        double minTotalDistance = prefix[n - 1] + legs[permutation[0] * width + endId];
+        int[] bestPermutation = permutation.clone();
+
+        int[] c = new int[n];
+        boolean timedOut = false;
+        long evaluated = 1;
+        int i = 1;
+        while (i < n) {
             if (c[i] < i) {
-                if (i % 2 == 0) {
-                    Collections.swap(currentPermutation, 0, i);
-                } else {
-                    Collections.swap(currentPermutation, c[i], i);
+                int swapWith = (i & 1) == 0 ? 0 : c[i];
+                int tmp = permutation[swapWith];
+                permutation[swapWith] = permutation[i];
+                permutation[i] = tmp;
+                updatePrefix(legs, width, permutation, prefix, n - 1 - i);
+                double total = prefix[n - 1] + legs[permutation[0] * width + endId];
+                if (total < minTotalDistance) {
+                    minTotalDistance = total;
+                    System.arraycopy(permutation, 0, bestPermutation, 0, n);
+                }
+                if ((++evaluated & 0xFFF) == 0 && System.nanoTime() > deadlineNanos) {
+                    timedOut = true;
+                    break;
                 }
-                calculatePermutationDistance(roadNetwork, startCity, endCity, currentPermutation, minTotalDistance, bestPoiOrder, deadline, timeoutOccurred);
                 c[i]++;
-                i = 0; // Reset to check the new permutation from the start of the array manipulation logic
+                i = 1;
             } else {
                 c[i] = 0;
                 i++;
             }
         }
-        
-        long endTime = System.currentTimeMillis();
 
-        if (timeoutOccurred.get()) {
-            System.out.println("Warning: Permutation POI optimization timed out after " + (endTime - startTime) + " ms.");
-            // Even if timed out, return the best found so far, if any
-            if (bestPoiOrder.get() != null) {
-                return new OptimizerResult(bestPoiOrder.get(), minTotalDistance.get(), endTime - startTime, true, ALGORITHM_NAME);
+        Best best = new Best();
+        best.distance = minTotalDistance;
+        best.route = new int[n];
+        for (int p = 0; p < n; p++) {
+            best.route[p] = bestPermutation[n - 1 - p];
+        }
+        best.timedOut = timedOut;
+        return best;
+    }
+
+    /**
+     * Splits the orders by their first two POIs into fork-join tasks. Each task enumerates its suffixes depth-first
+     * with a thread-local best and prunes any partial route that is already longer than the shared bound, which
+     * every task lowers as it improves. Pruning is strict, so an optimal route is never cut and combining the task
+     * results in task order gives the same answer on any number of threads.
+     */
+    private static Best searchInParallel(double[] legs, int n, long deadlineNanos) {
+        final int width = n + 2;
+        // Seed the bound with the listed order so pruning starts before the first task finishes a route
+        double seed = legs[1];
+        for (int k = 1; k < n; k++) {
+            seed += legs[k * width + k + 1];
+        }
+        seed += legs[n * width + n + 1];
+        AtomicLong sharedBound = new AtomicLong(Double.doubleToLongBits(seed));
+        AtomicBoolean stop = new AtomicBoolean(false);
+
+        List<PrefixTask> tasks = new ArrayList<>(n * (n - 1));
+        for (int first = 1; first <= n; first++) {
+            for (int second = 1; second <= n; second++) {
+                if (first != second) {
+                    tasks.add(new PrefixTask(legs, n, first, second, sharedBound, stop, deadlineNanos));
+                }
             }
-            return OptimizerResult.timedOut(ALGORITHM_NAME, endTime - startTime);
         }
+        ForkJoinTask.invokeAll(tasks);
 
-        List<City> finalBestOrder = bestPoiOrder.get();
-        if (finalBestOrder == null) { // No path found for any permutation
-             return OptimizerResult.empty(ALGORITHM_NAME);
+        Best best = new Best();
+        for (PrefixTask task : tasks) {
+            if (task.localBest < best.distance) {
+                best.distance = task.localBest;
+                best.route = task.localRoute;
+            }
         }
-        
-        return new OptimizerResult(finalBestOrder, minTotalDistance.get(), endTime - startTime, false, ALGORITHM_NAME);
+        best.timedOut = stop.get();
+        return best;
     }
 
-    /**
-     * Calculates the total distance for a given permutation of POIs.
-     */
-    private void calculatePermutationDistance(
-            RoadNetwork roadNetwork,
-            City startCity,
-            City endCity,
-            List<City> poiPermutation,
-            AtomicReference<Double> minTotalDistance,
-            AtomicReference<List<City>> bestPoiOrder,
-            long deadline,
-            AtomicBoolean timeoutOccurred) {
+    private static final class PrefixTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] legs;
+        private final int width;
+        private final int endId;
+        private final int[] route;
+        private final AtomicLong sharedBound;
+        private final AtomicBoolean stop;
+        private final long deadlineNanos;
+        private double sharedSnapshot;
+        private int visited;
+        private boolean stopped;
+        double localBest = Double.POSITIVE_INFINITY;
+        int[] localRoute;
 
-        if (System.currentTimeMillis() > deadline || poiPermutation.isEmpty()) { // Added check for empty poiPermutation
-            timeoutOccurred.set(true);
-            return;
+        PrefixTask(double[] legs, int n, int first, int second,
+                   AtomicLong sharedBound, AtomicBoolean stop, long deadlineNanos) {
+            this.legs = legs;
+            this.width = n + 2;
+            this.endId = n + 1;
+            this.sharedBound = sharedBound;
+            this.stop = stop;
+            this.deadlineNanos = deadlineNanos;
+            route = new int[n];
+            route[0] = first;
+            route[1] = second;
+            int position = 2;
+            for (int localId = 1; localId <= n; localId++) {
+                if (localId != first && localId != second) {
+                    route[position++] = localId;
+                }
+            }
         }
 
-        double currentTotalDistance = 0;
-        City currentCity = startCity;
-        
-        // Path from startCity to the first POI in the permutation
-        PathfindingService.PathResult segmentResult = pathfindingService.findShortestPath(roadNetwork, currentCity, poiPermutation.get(0), Collections.emptyList(), false, 0);
-        if (segmentResult.isTimedOut() || segmentResult.getTotalDistance() == Double.POSITIVE_INFINITY) {
-            // Cannot reach first POI or segment calculation failed
-            // Mark this permutation as infinitely long, or handle as error
-            // For simplicity, we might just return if the first segment is bad, 
-            // as the whole permutation becomes invalid.
-            // Or, set currentTotalDistance to POSITIVE_INFINITY and let it be skipped.
-            return; 
-        }
-        currentTotalDistance += segmentResult.getTotalDistance();
-        currentCity = poiPermutation.get(0); // Update current city to the first POI
-
-        // Paths between consecutive POIs in the permutation
-        for (int i = 0; i < poiPermutation.size() - 1; i++) {
-            if (System.currentTimeMillis() > deadline) { timeoutOccurred.set(true); return; }
-            City nextPoi = poiPermutation.get(i + 1);
-            segmentResult = pathfindingService.findShortestPath(roadNetwork, currentCity, nextPoi, Collections.emptyList(), false, 0);
-            if (segmentResult.isTimedOut() || segmentResult.getTotalDistance() == Double.POSITIVE_INFINITY) {
-                currentTotalDistance = Double.POSITIVE_INFINITY; // Mark permutation as invalid
-                break; // No need to calculate further for this permutation
+        @Override
+        protected void compute() {
+            refresh();
+            double cost = legs[route[0]] + legs[route[0] * width + route[1]];
+            if (!stopped && cost <= sharedSnapshot) {
+                search(2, route[1], cost);
             }
-            currentTotalDistance += segmentResult.getTotalDistance();
-            currentCity = nextPoi;
         }
 
-        // Path from the last POI in the permutation to endCity
-        if (currentTotalDistance != Double.POSITIVE_INFINITY) { // Only if path so far is feasible
-            if (System.currentTimeMillis() > deadline) { timeoutOccurred.set(true); return; }
-            segmentResult = pathfindingService.findShortestPath(roadNetwork, currentCity, endCity, Collections.emptyList(), false, 0);
-            if (segmentResult.isTimedOut() || segmentResult.getTotalDistance() == Double.POSITIVE_INFINITY) {
-                currentTotalDistance = Double.POSITIVE_INFINITY; // Mark permutation as invalid
-            } else {
-                currentTotalDistance += segmentResult.getTotalDistance();
+        /** Tries every remaining POI at {@code position}, swapping it into place and back. */
+        private void search(int position, int previous, double partial) {
+            if (position == route.length) {
+                double total = partial + legs[previous * width + endId];
+                if (total < localBest) {
+                    localBest = total;
+                    localRoute = route.clone();
+                    publish(total);
+                }
+                return;
+            }
+            for (int k = position; k < route.length && !stopped; k++) {
+                int next = route[k];
+                route[k] = route[position];
+                route[position] = next;
+                double cost = partial + legs[previous * width + next];
+                if (cost <= Math.min(localBest, sharedSnapshot)) {
+                    if ((++visited & 0x3FF) == 0) {
+                        refresh();
+                    }
+                    search(position + 1, next, cost);
+                }
+                route[position] = route[k];
+                route[k] = next;
             }
         }
 
-        // Update minimum distance and best order if this permutation is better
-        if (currentTotalDistance < minTotalDistance.get()) {
-            minTotalDistance.set(currentTotalDistance);
-            bestPoiOrder.set(new ArrayList<>(poiPermutation)); // Store a copy
+        private void refresh() {
+            sharedSnapshot = Double.longBitsToDouble(sharedBound.get());
+            if (stop.get() || System.nanoTime() > deadlineNanos) {
+                stop.set(true);
+                stopped = true;
+            }
+        }
+
+        private void publish(double total) {
+            long current = sharedBound.get();
+            while (total < Double.longBitsToDouble(current)
+                    && !sharedBound.compareAndSet(current, Double.doubleToLongBits(total))) {
+                current = sharedBound.get();
+            }
+            sharedSnapshot = Math.min(sharedSnapshot, total);
+        }
+    }
+
+    /**
+     * Recomputes prefix[p] for route positions from {@code fromPosition} to the end of the route.
+     */
+    private static void updatePrefix(double[] legs, int width, int[] permutation, double[] prefix, int fromPosition) {
+        int n = permutation.length;
+        int previous = fromPosition == 0 ? 0 : permutation[n - fromPosition];
+        double sum = fromPosition == 0 ? 0 : prefix[fromPosition - 1];
+        for (int p = fromPosition; p < n; p++) {
+            int current = permutation[n - 1 - p];
+            sum += legs[previous * width + current];
+            prefix[p] = sum;
+            previous = current;
         }
     }
-} 
\ No newline at end of file
+}
@@ -8,6 +8,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 
 /**
  * Defines the contract for services that optimize the order of visiting Points of Interest (POIs).
@@ -59,6 +61,35 @@ public interface PoiOptimizerService {
         throw new UnsupportedOperationException("This optimizer does not support precomputed distance matrices.");
     }
 
+    /**
+     * Index-based variant of the precomputed-matrix method: start, end and POIs are given as row/column
+     * indices of {@code shortestDistances}, so optimizers can run without any City hashing.
+     *
+     * @param startIndexInS The index of the starting city in the matrix.
+     * @param endIndexInS The index of the ending city in the matrix.
+     * @param poiIndicesInS The matrix indices of the POIs to visit.
+     * @param shortestDistances The precomputed matrix over S.
+     * @param orderedNodesInS The city of every matrix row/column, used to build the resulting order.
+     * @param useTimeout Whether to use a timeout for the optimization process.
+     * @param timeoutMillis The timeout duration in milliseconds.
+     * @return An OptimizerResult containing the best order of POIs, total distance, and other metrics.
+     */
+    default OptimizerResult findBestPoiOrder(
+            int startIndexInS, int endIndexInS, int[] poiIndicesInS,
+            double[][] shortestDistances, List<City> orderedNodesInS,
+            boolean useTimeout, long timeoutMillis) {
+        Map<City, Integer> nodeToIndexInS = new HashMap<>();
+        for (int i = 0; i < orderedNodesInS.size(); i++) {
+            nodeToIndexInS.put(orderedNodesInS.get(i), i);
+        }
+        List<City> pois = new ArrayList<>(poiIndicesInS.length);
+        for (int poiIndex : poiIndicesInS) {
+            pois.add(orderedNodesInS.get(poiIndex));
+        }
+        return findBestPoiOrder(orderedNodesInS.get(startIndexInS), orderedNodesInS.get(endIndexInS), pois,
+                new LinkedHashSet<>(orderedNodesInS), shortestDistances, nodeToIndexInS, orderedNodesInS, useTimeout, timeoutMillis);
+    }
+
     // Inner class or record to represent the result of a POI optimization
     // Similar to PathResult, contains the ordered list, distance, time, timeout status.
     class OptimizerResult {
@@ -0,0 +1,62 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.RoadChange;
+
+/**
+ * Decides whether a road update can change the shortest distances from one source, so caches drop or
+ * recompute only the rows it affects. For a change of road u -> v:
+ * an increase (or removal) matters only if the road lies on a shortest path from the source, i.e. it is the
+ * tree edge into v or, without a tree, {@code d(u) + old == d(v)}; a decrease (or addition) matters only if
+ * {@code d(u) + new < d(v)}. Comparisons lean towards "affected" by a small relative tolerance, so rounding
+ * can only cost an extra search, never a stale row.
+ */
+final class RoadChangeImpact {
+    private static final double RELATIVE_TOLERANCE = 1e-9;
+
+    private RoadChangeImpact() {
+    }
+
+    /**
+     * @param change The road update.
+     * @param row Distances from the source on the previous network, indexed by city index.
+     * @param prev The shortest-path tree of that row, or null if unknown.
+     * @return true if distances from the source may differ on the current network.
+     */
+    static boolean affects(RoadChange change, double[] row, int[] prev) {
+        return affects(change, row[change.getFromIndex()], row[change.getToIndex()], prev);
+    }
+
+    /**
+     * @param change The road update.
+     * @param distanceToFrom Distance from the source to the road's start on the previous network.
+     * @param distanceToTo Distance from the source to the road's end on the previous network.
+     * @param prev The source's shortest-path tree on the previous network, or null if unknown.
+     * @return true if distances from the source may differ on the current network.
+     */
+    static boolean affects(RoadChange change, double distanceToFrom, double distanceToTo, int[] prev) {
+        if (distanceToFrom == Double.POSITIVE_INFINITY) {
+            return false; // the road is unreachable from the source either way
+        }
+        if (change.isIncrease()) {
+            if (prev != null) {
+                return prev[change.getToIndex()] == change.getFromIndex();
+            }
+            return distanceToFrom + change.getOldDistance() <= distanceToTo + tolerance(distanceToTo);
+        }
+        return distanceToFrom + change.getNewDistance() < distanceToTo + tolerance(distanceToTo);
+    }
+
+    /**
+     * Decides from a shortest-path tree alone: an increase off the tree leaves it valid, anything else may not.
+     * @param change The road update.
+     * @param prev The source's shortest-path tree on the previous network.
+     * @return true if the tree may no longer be a shortest-path tree on the current network.
+     */
+    static boolean affectsTree(RoadChange change, int[] prev) {
+        return !change.isIncrease() || prev[change.getToIndex()] == change.getFromIndex();
+    }
+
+    private static double tolerance(double distance) {
+        return RELATIVE_TOLERANCE * Math.max(1.0, Math.abs(distance));
+    }
+}
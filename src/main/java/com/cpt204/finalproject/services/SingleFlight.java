@@ -0,0 +1,62 @@
+package com.cpt204.finalproject.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of the same key: the first caller runs the loader and every caller
+ * that arrives while it is running waits on the same future instead of repeating the work.
+ * Nothing is retained once a computation finishes; caching the result is the caller's job.
+ *
+ * @param <K> Key type.
+ * @param <V> Result type.
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the loader for the key, or joins a computation of the same key that is already running.
+     * A loader exception is rethrown to the leader and to every waiting caller.
+     *
+     * @param key The key being computed.
+     * @param loader Computes the value; called at most once per flight.
+     * @return The computed value.
+     */
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return The number of computations currently running.
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+}
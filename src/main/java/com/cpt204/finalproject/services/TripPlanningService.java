@@ -3,7 +3,9 @@ package com.cpt204.finalproject.services;
 import com.cpt204.finalproject.dto.TripPlan;
 import com.cpt204.finalproject.model.Attraction;
 import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
 import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.RoadNetworkListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -14,23 +16,30 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * High-level service responsible for orchestrating the trip planning process.
  * It uses PoiOptimizerService to find the best order of POIs and
  * PathfindingService to find the paths between consecutive points in the optimized route.
+ * Registered with a {@link com.cpt204.finalproject.model.VersionedRoadNetwork}, it follows road updates:
+ * each trip is planned on one network version, and later trips see the update.
  */
-public class TripPlanningService {
+public class TripPlanningService implements RoadNetworkListener {
 
-    private final RoadNetwork roadNetwork;
+    private volatile RoadNetwork roadNetwork; // replaced on road updates; each planTrip works on the version it read first
     private final PathfindingService pathfindingService;
     private final PoiOptimizerService permutationOptimizer; // For small N
     private final PoiOptimizerService dpOptimizer;          // For larger N
+    private final PoiOptimizerService branchAndBoundOptimizer; // Beyond DP_MAX_POIS, where the DP tables get too large
     private final DistanceCache distanceCache; // New
-    private final PathfindingService denseDijkstraService; // New, specifically DenseDijkstraService instance
+    private final PathfindingService precomputationPathfinder; // Must return the full distArray when endCity is null, or implement DistanceTableService
 
     private static final int PERMUTATION_THRESHOLD = 3;
+    private static final int DP_MAX_POIS = 22; // 22 * 2^21 DP states, about 230 MB; more POIs go to branch and bound
     private static final long DEFAULT_TIMEOUT_MS = 30000; // Example 30 seconds timeout
+    private static final String PRECOMPUTED_SEGMENT_NAME = "Precomputed"; // Legs answered from DistanceCache without a search
 
     /**
      * Constructs a TripPlanningService.
@@ -48,8 +57,9 @@ public class TripPlanningService {
         this.pathfindingService = pathfindingService;
         this.permutationOptimizer = permutationOptimizer;
         this.dpOptimizer = dpOptimizer;
-        this.distanceCache = new DistanceCache();
-        this.denseDijkstraService = new DenseDijkstraService();
+        this.branchAndBoundOptimizer = new BranchAndBoundPoiOptimizerService(pathfindingService);
+        this.precomputationPathfinder = selectPrecomputationPathfinder(pathfindingService);
+        this.distanceCache = new DistanceCache(this.precomputationPathfinder);
     }
 
     /**
@@ -60,20 +70,92 @@ public class TripPlanningService {
      * @param permutationOptimizer The optimizer using permutation (for small number of POIs).
      * @param dpOptimizer The optimizer using dynamic programming (for moderate number of POIs).
      * @param distanceCache The distance cache for precomputed distances.
-     * @param denseDijkstraService The dense Dijkstra service for dense Dijkstra algorithm.
+     * @param precomputationPathfinder The single-source service used by the distance cache
+     *                                 (DenseDijkstraService for dense graphs, BinaryHeapDijkstraService for sparse ones).
      */
     public TripPlanningService(RoadNetwork roadNetwork, 
                                PathfindingService pathfindingService, 
                                PoiOptimizerService permutationOptimizer, 
                                PoiOptimizerService dpOptimizer,
                                DistanceCache distanceCache,
-                               PathfindingService denseDijkstraService) {
+                               PathfindingService precomputationPathfinder) {
         this.roadNetwork = roadNetwork;
         this.pathfindingService = pathfindingService;
         this.permutationOptimizer = permutationOptimizer;
         this.dpOptimizer = dpOptimizer;
+        this.branchAndBoundOptimizer = new BranchAndBoundPoiOptimizerService(pathfindingService);
         this.distanceCache = distanceCache;
-        this.denseDijkstraService = denseDijkstraService;
+        this.precomputationPathfinder = precomputationPathfinder;
+    }
+
+    /**
+     * Picks the single-source engine for distance precomputation: the configured pathfinder if it is one of the
+     * full-distArray Dijkstra engines or a many-to-many {@link DistanceTableService}, the heap engine behind a
+     * bidirectional pathfinder, otherwise DenseDijkstraService.
+     */
+    private static PathfindingService selectPrecomputationPathfinder(PathfindingService pathfindingService) {
+        if (pathfindingService instanceof BinaryHeapDijkstraService || pathfindingService instanceof DenseDijkstraService
+                || pathfindingService instanceof DistanceTableService) {
+            return pathfindingService;
+        }
+        if (pathfindingService instanceof BidirectionalDijkstraService) {
+            return new BinaryHeapDijkstraService();
+        }
+        return new DenseDijkstraService();
+    }
+
+    /**
+     * Follows a road update: the distance cache and any listening pathfinders carry over what the change
+     * cannot affect, then later trips are planned on the new network version.
+     * Contraction hierarchies are contracted again in the background, with plain searches answering queries on the
+     * new version meanwhile. Landmark indexes rebuild on their next query.
+     *
+     * @param change The road update.
+     */
+    @Override
+    public void roadChanged(RoadChange change) {
+        distanceCache.roadChanged(change);
+        if (precomputationPathfinder instanceof RoadNetworkListener) {
+            ((RoadNetworkListener) precomputationPathfinder).roadChanged(change);
+        }
+        if (pathfindingService != precomputationPathfinder && pathfindingService instanceof RoadNetworkListener) {
+            ((RoadNetworkListener) pathfindingService).roadChanged(change);
+        }
+        this.roadNetwork = change.getCurrent();
+    }
+
+    /**
+     * Starts warming up the distance cache in the background with the rows of the top-ranked hub cities.
+     * Trips can be planned while it runs and pick up each row as soon as it is cached. After a road update the
+     * warm-up continues on the updated network.
+     *
+     * @param ranking How hub cities are ranked (road degree or attraction count).
+     * @param cityCount How many hub cities to precompute; 0 or less disables the warm-up.
+     * @param executor The executor running the warm-up.
+     * @return A future completed with the number of rows warmed.
+     */
+    public CompletableFuture<Integer> startCacheWarmUp(DistanceCacheWarmUp.Ranking ranking, int cityCount, Executor executor) {
+        return DistanceCacheWarmUp.start(distanceCache, () -> roadNetwork, precomputationPathfinder, ranking, cityCount, executor);
+    }
+
+    /**
+     * Suggests attraction names for type-ahead input: names starting with the query first, then close misspellings.
+     * @param query The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return Up to {@code limit} attraction names, best first.
+     */
+    public List<String> suggestAttractions(String query, int limit) {
+        return roadNetwork.getAttractionNameIndex().suggest(query, limit);
+    }
+
+    /**
+     * Suggests city names for type-ahead input, ranked like {@link #suggestAttractions(String, int)}.
+     * @param query The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return Up to {@code limit} city names, best first.
+     */
+    public List<String> suggestCities(String query, int limit) {
+        return roadNetwork.getCityNameIndex().suggest(query, limit);
     }
 
     /**
@@ -99,6 +181,7 @@ public class TripPlanningService {
      * @return A TripPlan object containing the result.
      */
     public TripPlan planTrip(String startCityName, String endCityName, List<String> attractionNames, boolean useTimeout, long timeoutMillis) {
+        final RoadNetwork roadNetwork = this.roadNetwork; // one network version for the whole trip
 
         // 1. Validate Input Cities and Attractions
         City startCity = roadNetwork.getCityByName(startCityName);
@@ -115,11 +198,7 @@ public class TripPlanningService {
         List<City> poiCities = new ArrayList<>(); // Cities containing the required attractions
         if (attractionNames != null) {
             for (String attractionName : attractionNames) {
-                final String normalizedAttractionName = attractionName.trim().toLowerCase();
-                Attraction foundAttraction = roadNetwork.getAllAttractions().stream()
-                        .filter(a -> a.getAttractionName() != null && 
-                                     a.getAttractionName().trim().toLowerCase().equals(normalizedAttractionName))
-                        .findFirst().orElse(null);
+                Attraction foundAttraction = roadNetwork.getAttractionByName(attractionName); // O(1) normalised-name index
                         
                 if (foundAttraction == null) {
                      return TripPlan.failure("Attraction '" + attractionName + "' not found.");
@@ -153,62 +232,49 @@ public class TripPlanningService {
         String effectiveOptimizerName;
         PoiOptimizerService optimizerToUse;
 
+        // Shared precomputation stage: one single-source search per city of S, memoised by DistanceCache.
+        // The matrix drives the DP optimizer and the segment expansion below.
+        double[][] shortestDistances = null;
+        Map<City, Integer> nodeToIndexInS = null;
+        List<City> orderedNodesInS = null;
+        Set<City> S = new LinkedHashSet<>();
+        long remainingTimeoutForPrecomputation = timeoutMillis;
+        if (!poiCities.isEmpty()) {
+            S.add(startCity);
+            S.addAll(poiCities);
+            S.add(endCity);
+
+            long precomputeStartTime = System.currentTimeMillis();
+            DistanceCache.Entry precomputed = distanceCache.getOrComputeEntry(S, roadNetwork, this.precomputationPathfinder);
+            shortestDistances = precomputed.getDistances();
+            nodeToIndexInS = precomputed.getNodeToIndexMap();
+            orderedNodesInS = precomputed.getNodeList();
+            if (useTimeout) {
+                remainingTimeoutForPrecomputation -= System.currentTimeMillis() - precomputeStartTime;
+                if (remainingTimeoutForPrecomputation <= 0) {
+                    return TripPlan.failure("Overall timeout exceeded during distance pre-computation phase.");
+                }
+            }
+        }
+
         if (poiCities.isEmpty()) {
             System.out.println("No POIs selected. Calculating direct path.");
             optimizerToUse = permutationOptimizer; 
             optimizerResult = optimizerToUse.findBestPoiOrder(roadNetwork, startCity, endCity, poiCities, useTimeout, timeoutMillis);
             effectiveOptimizerName = "None";
+        } else if (poiCities.size() > DP_MAX_POIS || !DynamicProgrammingPoiOptimizerService.fitsInMemory(poiCities.size())) {
+            // Too many POIs for the DP tables (or too little free heap) - Use branch and bound
+            optimizerToUse = branchAndBoundOptimizer;
+            System.out.println("Using Branch-and-Bound Optimizer for " + poiCities.size() + " POIs.");
+            optimizerResult = branchAndBoundOptimizer.findBestPoiOrder(
+                    startCity, endCity, poiCities,
+                    S, shortestDistances, nodeToIndexInS, orderedNodesInS,
+                    useTimeout, remainingTimeoutForPrecomputation);
+            effectiveOptimizerName = optimizerResult.getAlgorithmName();
         } else if (poiCities.size() >= 2) { // 2 OR MORE POIs - Use DP
             optimizerToUse = dpOptimizer;
             System.out.println("Using Dynamic Programming Optimizer for " + poiCities.size() + " POIs.");
 
-            Set<City> S = new LinkedHashSet<>(); 
-            S.add(startCity);
-            S.addAll(poiCities); 
-            S.add(endCity);
-
-            List<City> orderedNodesInS = new ArrayList<>(S);
-            Map<City, Integer> nodeToIndexInS = new HashMap<>();
-            for (int i = 0; i < orderedNodesInS.size(); i++) {
-                nodeToIndexInS.put(orderedNodesInS.get(i), i);
-            }
-
-            int numNodesInS = S.size();
-            double[][] shortestDistances = new double[numNodesInS][numNodesInS];
-            long remainingTimeoutForPrecomputation = timeoutMillis; 
-
-            for (int i = 0; i < numNodesInS; i++) {
-                for (int j = 0; j < numNodesInS; j++) {
-                    long precomputeStartTime = System.currentTimeMillis();
-                    if (i == j) {
-                        shortestDistances[i][j] = 0.0;
-                    } else {
-                        City cityA = orderedNodesInS.get(i);
-                        City cityB = orderedNodesInS.get(j);
-                        
-                        PathfindingService.PathResult distResult = this.pathfindingService.findShortestPath(
-                                roadNetwork, cityA, cityB, Collections.emptyList(), 
-                                useTimeout, remainingTimeoutForPrecomputation); 
-                        
-                        if (distResult.isTimedOut()) {
-                             return TripPlan.failure("Timeout during distance pre-computation for DP optimizer between " + cityA.getName() + " and " + cityB.getName());
-                        }
-                        if (distResult.getTotalDistance() == Double.POSITIVE_INFINITY) {
-                            shortestDistances[i][j] = Double.POSITIVE_INFINITY;
-                        } else {
-                            shortestDistances[i][j] = distResult.getTotalDistance();
-                        }
-                    }
-                    if (useTimeout) {
-                        long precomputeTimeTaken = System.currentTimeMillis() - precomputeStartTime;
-                        remainingTimeoutForPrecomputation -= precomputeTimeTaken;
-                        if (remainingTimeoutForPrecomputation <= 0) {
-                            return TripPlan.failure("Overall timeout exceeded during distance pre-computation phase for DP optimizer.");
-                        }
-                    }
-                }
-            }
-            
             if (dpOptimizer instanceof DynamicProgrammingPoiOptimizerService) {
                 optimizerResult = ((DynamicProgrammingPoiOptimizerService) dpOptimizer).findBestPoiOrder(
                         startCity, endCity, poiCities, 
@@ -227,16 +293,26 @@ public class TripPlanningService {
         } else { // Exactly 1 POI - Use Permutation
             optimizerToUse = permutationOptimizer;
             System.out.println("Using Permutation Optimizer for " + poiCities.size() + " POI.");
-            optimizerResult = optimizerToUse.findBestPoiOrder(
-                roadNetwork, startCity, endCity, poiCities, useTimeout, timeoutMillis);
+            if (permutationOptimizer instanceof PermutationPoiOptimizerService) {
+                optimizerResult = permutationOptimizer.findBestPoiOrder(
+                        startCity, endCity, poiCities,
+                        S, shortestDistances, nodeToIndexInS, orderedNodesInS,
+                        useTimeout, remainingTimeoutForPrecomputation);
+            } else {
+                optimizerResult = optimizerToUse.findBestPoiOrder(
+                    roadNetwork, startCity, endCity, poiCities, useTimeout, timeoutMillis);
+            }
             effectiveOptimizerName = optimizerResult.getAlgorithmName();
         }
 
         if (optimizerResult.isTimedOut()) {
             if ("None".equals(effectiveOptimizerName)) {
                  System.err.println("Warning: Optimizer reported timeout for a 0-POI (None) scenario. This should be investigated but proceeding with timeout status.");
-            } else {
+            } else if (optimizerResult.getBestOrder().isEmpty()) {
                 return TripPlan.failure("POI optimization timed out using " + effectiveOptimizerName + ".");
+            } else {
+                // Branch and bound and the permutation search return the best order found before the deadline
+                System.err.println("Warning: POI optimization timed out using " + effectiveOptimizerName + ". Using the best order found so far.");
             }
         }
         
@@ -263,8 +339,7 @@ public class TripPlanningService {
             City segmentStart = fullVisitOrder.get(i);
             City segmentEnd = fullVisitOrder.get(i + 1);
 
-            PathfindingService.PathResult segmentResult = pathfindingService.findShortestPath(
-                    roadNetwork, segmentStart, segmentEnd, Collections.emptyList(), false, 0);
+            PathfindingService.PathResult segmentResult = findSegment(roadNetwork, segmentStart, segmentEnd, shortestDistances, nodeToIndexInS);
 
             detailedSegments.add(segmentResult);
             totalPathfindingTime += segmentResult.getCalculationTimeMillis();
@@ -324,6 +399,7 @@ public class TripPlanningService {
 
     public TripPlan planTrip(City startCity, City endCity, List<Attraction> attractionsToVisit, String optimizerType) {
         final long methodStartTime = System.nanoTime();
+        final RoadNetwork roadNetwork = this.roadNetwork; // one network version for the whole trip
 
         if (startCity == null || endCity == null) {
             return TripPlan.createErrorPlan("Start or end city cannot be null.");
@@ -364,11 +440,12 @@ public class TripPlanningService {
         poiCities.forEach(S::add); // Add all unique POI cities
         S.add(resolvedEndCity); // End city might be same as start or a POI city, Set handles uniqueness
 
-        // Precompute pairwise shortest paths among cities in S using DenseDijkstraService
-        // The denseDijkstraService instance should be injected or available here.
-        double[][] shortestDistancesMatrix = distanceCache.getOrComputeDistances(S, roadNetwork, this.denseDijkstraService);
-        Map<City, Integer> nodeToIndexInS = distanceCache.getNodeToIndexMap(S); // Get the mapping for S
-        List<City> orderedNodesInS = distanceCache.getNodeList(S); // Get the ordered list for S
+        // Precompute pairwise shortest paths among cities in S using the configured single-source engine
+        // Matrix, mapping and order come from one cache entry, so they always belong together
+        DistanceCache.Entry precomputed = distanceCache.getOrComputeEntry(S, roadNetwork, this.precomputationPathfinder);
+        double[][] shortestDistancesMatrix = precomputed.getDistances();
+        Map<City, Integer> nodeToIndexInS = precomputed.getNodeToIndexMap(); // Get the mapping for S
+        List<City> orderedNodesInS = precomputed.getNodeList(); // Get the ordered list for S
         
         // Select the optimizer based on optimizerType
         PoiOptimizerService selectedOptimizerInstance; // Renamed for clarity
@@ -381,17 +458,22 @@ public class TripPlanningService {
             // Assuming this.dpOptimizer is an instance of DynamicProgrammingPoiOptimizerService
             // and is configured to use the new method.
             // If TripPlanningService holds specific optimizer instances (e.g., this.dpOptimizer):
-            selectedOptimizerInstance = this.dpOptimizer; // Assumes dpOptimizer is already new DynamicProgrammingPoiOptimizerService(this.roadNetwork, this.denseDijkstraService)
+            selectedOptimizerInstance = this.dpOptimizer; // Assumes dpOptimizer is already new DynamicProgrammingPoiOptimizerService(this.roadNetwork, pathfinder)
+            usePrecomputedForSelectedOptimizer = true;
+        } else if ("BranchAndBoundPoiOptimizerService".equalsIgnoreCase(optimizerType) ||
+                   "BranchAndBound".equalsIgnoreCase(optimizerType)) {
+            selectedOptimizerInstance = this.branchAndBoundOptimizer;
             usePrecomputedForSelectedOptimizer = true;
         } else if ("PermutationPoiOptimizerService".equalsIgnoreCase(optimizerType) || 
                    "BruteForce".equalsIgnoreCase(optimizerType)) {
             // Assuming this.permutationOptimizer is an instance of PermutationPoiOptimizerService
-            selectedOptimizerInstance = this.permutationOptimizer; // Assumes permutationOptimizer is new PermutationPoiOptimizerService(this.denseDijkstraService)
-            usePrecomputedForSelectedOptimizer = false; // Permutation optimizer will use its standard method
+            selectedOptimizerInstance = this.permutationOptimizer; // Assumes permutationOptimizer is new PermutationPoiOptimizerService(pathfinder)
+            // The matrix is already built, so the permutation optimizer scores orders against it
+            usePrecomputedForSelectedOptimizer = selectedOptimizerInstance instanceof PermutationPoiOptimizerService;
         } else {
             System.err.println("Unknown or unsupported optimizer type: " + optimizerType + ". Defaulting to Permutation-based.");
             selectedOptimizerInstance = this.permutationOptimizer; // Default
-            usePrecomputedForSelectedOptimizer = false;
+            usePrecomputedForSelectedOptimizer = selectedOptimizerInstance instanceof PermutationPoiOptimizerService;
         }
 
         PoiOptimizerService.OptimizerResult optimizerResult;
@@ -399,8 +481,10 @@ public class TripPlanningService {
         boolean useTimeoutForOptimizer = true; // Example, configure as needed
 
         if (usePrecomputedForSelectedOptimizer) {
-            if (!(selectedOptimizerInstance instanceof DynamicProgrammingPoiOptimizerService)) {
-                 return TripPlan.createErrorPlan("Selected optimizer for precomputation is not a DynamicProgrammingPoiOptimizerService instance.");
+            if (!(selectedOptimizerInstance instanceof DynamicProgrammingPoiOptimizerService)
+                    && !(selectedOptimizerInstance instanceof BranchAndBoundPoiOptimizerService)
+                    && !(selectedOptimizerInstance instanceof PermutationPoiOptimizerService)) {
+                 return TripPlan.createErrorPlan("Selected optimizer does not support precomputed distances.");
             }
             // Call the new method that accepts precomputed distances
             optimizerResult = selectedOptimizerInstance.findBestPoiOrder(
@@ -417,6 +501,10 @@ public class TripPlanningService {
             );
         }
 
+        if (optimizerResult.isTimedOut() && optimizerResult.getBestOrder().isEmpty() && !poiCities.isEmpty()) {
+            return TripPlan.failure("POI optimization timed out using " + optimizerResult.getAlgorithmName() + " before any order was found.");
+        }
+
         // 3. Construct Full Path and Calculate Segment Details
         List<City> optimizedPoiOrder = optimizerResult.getBestOrder();
         List<City> fullVisitOrder = new ArrayList<>();
@@ -438,8 +526,7 @@ public class TripPlanningService {
 
             // Note: Pathfinding between segments currently doesn't use the main timeout.
             // You might want to pass a portion of the remaining time if needed.
-            PathfindingService.PathResult segmentResult = pathfindingService.findShortestPath(
-                    roadNetwork, segmentStart, segmentEnd, Collections.emptyList(), false, 0);
+            PathfindingService.PathResult segmentResult = findSegment(roadNetwork, segmentStart, segmentEnd, shortestDistancesMatrix, nodeToIndexInS);
 
             detailedSegments.add(segmentResult);
             totalPathfindingTime += segmentResult.getCalculationTimeMillis();
@@ -493,4 +580,39 @@ public class TripPlanningService {
                 status
         );
     }
-} 
\ No newline at end of file
+
+    /**
+     * Finds one leg of the final route. When the leg's endpoints are in the precomputed matrix for S,
+     * the matrix already holds its distance and the path is rebuilt from the shortest-path tree DistanceCache kept
+     * for the leg's start, so no search is repeated. Otherwise the configured pathfinder produces the path.
+     *
+     * @param roadNetwork The network version the trip is planned on.
+     * @param segmentStart The first city of the leg.
+     * @param segmentEnd The last city of the leg.
+     * @param shortestDistances The precomputed matrix for S, or null if none was computed.
+     * @param nodeToIndexInS The row/column index of each city in {@code shortestDistances}, or null.
+     * @return The path result for the leg.
+     */
+    private PathfindingService.PathResult findSegment(RoadNetwork roadNetwork, City segmentStart, City segmentEnd,
+                                                      double[][] shortestDistances, Map<City, Integer> nodeToIndexInS) {
+        if (shortestDistances != null && nodeToIndexInS != null) {
+            Integer i = nodeToIndexInS.get(segmentStart);
+            Integer j = nodeToIndexInS.get(segmentEnd);
+            if (i != null && j != null) {
+                if (segmentStart.equals(segmentEnd)) {
+                    return new PathfindingService.PathResult(List.of(segmentStart), 0.0, 0.0, false, PRECOMPUTED_SEGMENT_NAME);
+                }
+                if (shortestDistances[i][j] == Double.POSITIVE_INFINITY) {
+                    return new PathfindingService.PathResult(List.of(), Double.POSITIVE_INFINITY, 0.0, false, PRECOMPUTED_SEGMENT_NAME);
+                }
+                final long startTime = System.nanoTime();
+                List<City> treePath = distanceCache.getCachedPath(roadNetwork, segmentStart, segmentEnd);
+                if (treePath != null && !treePath.isEmpty()) {
+                    return new PathfindingService.PathResult(treePath, shortestDistances[i][j],
+                            (System.nanoTime() - startTime) / 1_000_000.0, false, PRECOMPUTED_SEGMENT_NAME);
+                }
+            }
+        }
+        return pathfindingService.findShortestPath(roadNetwork, segmentStart, segmentEnd, Collections.emptyList(), false, 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+package com.cpt204.finalproject.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weight-bounded cache with W-TinyLFU policy: new entries enter a small LRU window; when the window overflows,
+ * its eldest entry competes with the eldest entry of the main LRU region and is admitted only if it has been
+ * requested more often, as estimated by a count-min sketch that is periodically halved so old popularity fades.
+ * One-off keys therefore cannot flush frequently used ones. All operations lock on the cache instance.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+final class WindowTinyLfuCache<K, V> {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final long maximumWeight;
+    private final long windowMaximumWeight;
+    private final ToIntFunction<V> weigher;
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long mainWeight;
+
+    // Count-min frequency sketch, one byte per counter, SKETCH_DEPTH rows of sketchWidth counters each.
+    private final byte[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int additions;
+
+    private static final class Node<V> {
+        final V value;
+        final int weight;
+
+        Node(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * @param maximumWeight The total weight the cache may hold.
+     * @param weigher Computes the weight of a value; must be positive and stable.
+     */
+    WindowTinyLfuCache(long maximumWeight, ToIntFunction<V> weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be positive.");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximumWeight = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+        this.weigher = weigher;
+        int sketchWidth = 1024;
+        this.sketch = new byte[SKETCH_DEPTH * sketchWidth];
+        this.sketchMask = sketchWidth - 1;
+        this.sampleSize = 10 * sketchWidth;
+    }
+
+    /**
+     * Looks up a value and records the access for admission decisions, whether or not it hits.
+     * @return The cached value, or null.
+     */
+    synchronized V get(K key) {
+        recordAccess(key);
+        Node<V> node = window.get(key);
+        if (node == null) {
+            node = main.get(key);
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Looks up a value without counting it as a request, for callers re-reading an entry they just obtained.
+     * @return The cached value, or null.
+     */
+    synchronized V peek(K key) {
+        Node<V> node = window.get(key);
+        if (node == null) {
+            node = main.get(key);
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Inserts the value unless the key is already cached.
+     * @return The value now associated with the key, which is the existing one if another caller got there first.
+     */
+    synchronized V putIfAbsent(K key, V value) {
+        Node<V> existing = window.get(key);
+        if (existing == null) {
+            existing = main.get(key);
+        }
+        if (existing != null) {
+            return existing.value;
+        }
+        Node<V> node = new Node<>(value, Math.max(1, weigher.applyAsInt(value)));
+        window.put(key, node);
+        windowWeight += node.weight;
+        while (windowWeight > windowMaximumWeight && !window.isEmpty()) {
+            Iterator<Map.Entry<K, Node<V>>> eldest = window.entrySet().iterator();
+            Map.Entry<K, Node<V>> candidate = eldest.next();
+            eldest.remove();
+            windowWeight -= candidate.getValue().weight;
+            admitToMain(candidate.getKey(), candidate.getValue());
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value of a cached key in place, keeping its position and frequency.
+     * @return true if the key was cached and its value replaced.
+     */
+    synchronized boolean replace(K key, V value) {
+        LinkedHashMap<K, Node<V>> region = window.containsKey(key) ? window : main;
+        Node<V> existing = region.get(key);
+        if (existing == null) {
+            return false;
+        }
+        Node<V> node = new Node<>(value, Math.max(1, weigher.applyAsInt(value)));
+        region.put(key, node);
+        if (region == window) {
+            windowWeight += node.weight - existing.weight;
+        } else {
+            mainWeight += node.weight - existing.weight;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the entry for the key, if any.
+     */
+    synchronized void invalidate(K key) {
+        Node<V> node = window.remove(key);
+        if (node != null) {
+            windowWeight -= node.weight;
+        }
+        node = main.remove(key);
+        if (node != null) {
+            mainWeight -= node.weight;
+        }
+    }
+
+    /**
+     * @return A point-in-time copy of all cached key/value pairs, without recording any access.
+     */
+    synchronized Map<K, V> snapshot() {
+        Map<K, V> copy = new LinkedHashMap<>();
+        main.forEach((key, node) -> copy.put(key, node.value));
+        window.forEach((key, node) -> copy.put(key, node.value));
+        return copy;
+    }
+
+    synchronized void clear() {
+        window.clear();
+        main.clear();
+        windowWeight = 0;
+        mainWeight = 0;
+    }
+
+    synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    synchronized long weight() {
+        return windowWeight + mainWeight;
+    }
+
+    private void admitToMain(K key, Node<V> candidate) {
+        long mainMaximumWeight = maximumWeight - windowMaximumWeight;
+        if (candidate.weight > mainMaximumWeight) {
+            return;
+        }
+        int candidateFrequency = frequency(key);
+        while (mainWeight + candidate.weight > mainMaximumWeight) {
+            Iterator<Map.Entry<K, Node<V>>> eldest = main.entrySet().iterator();
+            Map.Entry<K, Node<V>> victim = eldest.next();
+            if (candidateFrequency <= frequency(victim.getKey())) {
+                return; // The resident entry is at least as popular; the candidate is dropped
+            }
+            eldest.remove();
+            mainWeight -= victim.getValue().weight;
+        }
+        main.put(key, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void recordAccess(K key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int index = row * (sketchMask + 1) + indexOf(hash, row);
+            if (sketch[index] < MAX_FREQUENCY) {
+                sketch[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            // Aging: halve every counter so the sketch follows recent popularity.
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] = (byte) (sketch[i] >>> 1);
+            }
+            additions /= 2;
+        }
+    }
+
+    private int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            min = Math.min(min, sketch[row * (sketchMask + 1) + indexOf(hash, row)]);
+        }
+        return min;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & sketchMask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x7FEB352D;
+        return h ^ (h >>> 15);
+    }
+}
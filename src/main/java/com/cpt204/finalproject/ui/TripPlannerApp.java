@@ -3,6 +3,7 @@ package com.cpt204.finalproject.ui;
 import com.cpt204.finalproject.dataloader.CsvDataLoader;
 import com.cpt204.finalproject.dto.TripPlan;
 import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
 import com.cpt204.finalproject.model.City;
 import com.cpt204.finalproject.model.Attraction;
 import com.cpt204.finalproject.services.*;
@@ -25,13 +26,18 @@ import javafx.stage.Stage;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 public class TripPlannerApp extends Application {
 
     private RoadNetwork roadNetwork;
+    private VersionedRoadNetwork versionedNetwork; // road updates are applied here; the planner follows each version
     private TripPlanningService tripPlanningService;
     private FilteredList<String> filteredAttractions;
     private ObservableList<String> allAttractions;
@@ -525,13 +531,18 @@ public class TripPlannerApp extends Application {
         }
         
         attractionSearchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            filteredAttractions.setPredicate(attraction -> {
-                if (newValue == null || newValue.isEmpty()) {
-                    return true;
-                }
-                // Ensure attraction is not null before calling toLowerCase
-                return attraction != null && attraction.toLowerCase().contains(newValue.toLowerCase());
-            });
+            if (filteredAttractions == null || tripPlanningService == null) {
+                return;
+            }
+            if (newValue == null || newValue.trim().isEmpty()) {
+                filteredAttractions.setPredicate(attraction -> true);
+                return;
+            }
+            // The trie matches the start of any word in a name (plus near misses), so no full-list scan is needed.
+            // Selected attractions are still indexed, so the limit counts them too.
+            int limit = allAttractions.size() + selectedAttractions.size();
+            Set<String> matches = new HashSet<>(tripPlanningService.suggestAttractions(newValue, limit));
+            filteredAttractions.setPredicate(matches::contains);
         });
         
         HBox buttonBox = new HBox(10);
@@ -700,7 +711,19 @@ public class TripPlannerApp extends Application {
         }
 
         // 初始化服务
-        PathfindingService dijkstraService = new DenseDijkstraService();
+        // Sparse networks (well below V^2 roads) are served faster by the heap-based engine
+        int numCities = roadNetwork.getNumberOfCities();
+        boolean sparseNetwork = roadNetwork.getNumberOfRoads() < (long) numCities * numCities / 4;
+        PathfindingService dijkstraService;
+        if (numCities <= AllPairsPathfindingService.PRECOMPUTE_CITY_LIMIT) {
+            // Small networks: every pair is precomputed once, segments and DP matrices become table lookups
+            // The tables are loaded from the memory-mapped snapshot when one is configured and matches this network
+            String snapshotProperty = System.getProperty("tripplanner.snapshot");
+            dijkstraService = new AllPairsPathfindingService(DistanceSnapshot.loadOrComputeAllPairs(
+                    snapshotProperty == null || snapshotProperty.isBlank() ? null : Paths.get(snapshotProperty), roadNetwork));
+        } else {
+            dijkstraService = sparseNetwork ? new BidirectionalDijkstraService() : new DenseDijkstraService();
+        }
         PoiOptimizerService permutationOptimizer = new PermutationPoiOptimizerService(dijkstraService);
         PoiOptimizerService dpOptimizer = new DynamicProgrammingPoiOptimizerService(roadNetwork, dijkstraService);
 
@@ -710,6 +733,18 @@ public class TripPlannerApp extends Application {
                 permutationOptimizer,
                 dpOptimizer
         );
+        versionedNetwork = new VersionedRoadNetwork(roadNetwork);
+        versionedNetwork.addListener(tripPlanningService);
+
+        // Warm the distance cache for hub cities in the background; the UI stays responsive meanwhile
+        int warmUpCities = Integer.getInteger("tripplanner.warmup.cities", 8);
+        if (numCities > AllPairsPathfindingService.PRECOMPUTE_CITY_LIMIT && warmUpCities > 0) {
+            ExecutorService warmUpExecutor = DistanceCacheWarmUp.newExecutor();
+            tripPlanningService.startCacheWarmUp(
+                    DistanceCacheWarmUp.Ranking.fromString(System.getProperty("tripplanner.warmup.ranking", "degree")),
+                    warmUpCities, warmUpExecutor);
+            warmUpExecutor.shutdown();
+        }
     }
 
     private void displayTripPlan(TripPlan plan) {
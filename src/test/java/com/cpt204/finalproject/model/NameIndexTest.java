@@ -0,0 +1,84 @@
+package com.cpt204.finalproject.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameIndexTest {
+
+    private static NameIndex index(String... names) {
+        Map<String, String> entries = new HashMap<>();
+        for (String name : names) {
+            entries.put(RoadNetwork.normalizeName(name), name);
+        }
+        return NameIndex.build(entries);
+    }
+
+    @Test
+    void prefixMatchesListNamesInLexicographicOrder() {
+        NameIndex index = index("New York", "Newark", "New Orleans", "Nashville", "Boston");
+        assertEquals(List.of("New Orleans", "New York", "Newark"), index.prefixMatches("new", 10));
+        assertEquals(List.of("New Orleans", "New York", "Newark"), index.prefixMatches(" NEW", 10)); // normalised like city names
+        assertEquals(List.of("New Orleans"), index.prefixMatches("New O", 10));
+        assertEquals(List.of("Nashville", "New Orleans"), index.prefixMatches("n", 2));
+        assertEquals(5, index.prefixMatches("", 10).size());
+        assertTrue(index.prefixMatches("Chicago", 10).isEmpty());
+    }
+
+    @Test
+    void prefixMatchesIncludeANameThatIsAlsoAPrefixOfAnother() {
+        NameIndex index = index("York", "Yorktown");
+        assertEquals(List.of("York", "Yorktown"), index.prefixMatches("york", 10));
+    }
+
+    @Test
+    void fuzzyMatchesStayWithinTheEditBound() {
+        NameIndex index = index("Boston", "Austin", "Houston", "Dallas");
+        assertEquals(List.of("Boston"), index.fuzzyMatches("Bostn", 1, 10));
+        assertEquals(List.of("Boston"), index.fuzzyMatches("boston", 0, 10));
+        assertTrue(index.fuzzyMatches("Bstn", 1, 10).isEmpty());
+        assertEquals(List.of("Boston"), index.fuzzyMatches("Bstn", 2, 10));
+        assertEquals(List.of("Austin", "Boston"), index.fuzzyMatches("Bustin", 2, 10)); // ties ordered by name
+    }
+
+    @Test
+    void fuzzyMatchesRankClosestFirst() {
+        NameIndex index = index("Portland", "Portlund", "Rortlxnd");
+        List<String> matches = index.fuzzyMatches("Portland", 2, 10);
+        assertEquals(List.of("Portland", "Portlund", "Rortlxnd"), matches);
+        assertEquals(List.of("Portland"), index.fuzzyMatches("Portland", 2, 1));
+    }
+
+    @Test
+    void suggestionsListPrefixMatchesBeforeTypos() {
+        NameIndex index = index("Grand Canyon", "Grandview", "Graceland", "Golden Gate Bridge");
+        assertEquals(List.of("Grand Canyon", "Grandview"), index.suggest("Grand", 10).subList(0, 2));
+        assertTrue(index.suggest("Grabd", 10).contains("Grand Canyon"), "one edit away from 5 typed characters");
+        assertTrue(index.suggest("Gra", 10).containsAll(List.of("Graceland", "Grand Canyon", "Grandview")));
+        assertTrue(index.suggest("Xrand", 10).isEmpty(), "the first character must match");
+    }
+
+    @Test
+    void wordStartsMatchLaterWordsOfAName() {
+        Map<String, String> entries = new HashMap<>();
+        for (String name : List.of("British Museum", "Museum of Modern Art", "Modern Art Gallery", "Mount Rushmore")) {
+            entries.put(RoadNetwork.normalizeName(name), name);
+        }
+        NameIndex index = NameIndex.build(entries, true);
+        assertEquals(4, index.size());
+        assertEquals(List.of("British Museum", "Museum of Modern Art"), index.prefixMatches("museum", 10));
+        assertEquals(List.of("Museum of Modern Art", "Modern Art Gallery"), index.prefixMatches("modern a", 10));
+        assertEquals(List.of("Museum of Modern Art", "Modern Art Gallery"), index.prefixMatches("art", 10));
+        assertEquals(4, index.prefixMatches("m", 10).size(), "a name matching at two word starts is listed once");
+        assertEquals(List.of("British Museum", "Museum of Modern Art"), index.suggest("Musem", 10));
+        assertEquals(List.of("Modern Art Gallery"), index.fuzzyMatches("galery", 1, 10));
+        assertTrue(index.prefixMatches("useum", 10).isEmpty(), "only word starts are indexed");
+        assertTrue(NameIndex.build(entries).prefixMatches("museum", 10).contains("Museum of Modern Art"));
+        assertEquals(1, NameIndex.build(entries).prefixMatches("museum", 10).size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllPairsShortestPathsTest {
+
+    @Test
+    void computedTablesMatchSingleSourceSearches() {
+        for (long seed = 1; seed <= 4; seed++) {
+            RoadNetwork network = RandomNetworks.network(seed, 150, 2, seed % 2 == 0); // spans several 64-city tiles
+            AllPairsShortestPaths tables = AllPairsShortestPaths.compute(network);
+            for (int source = 0; source < network.getNumberOfCities(); source++) {
+                assertTablesMatch(network, tables, source, RandomNetworks.distancesFrom(network, source));
+            }
+        }
+    }
+
+    @Test
+    void withRoadChangeKeepsDistancesAndNextHopsConsistent() {
+        for (long seed = 1; seed <= 6; seed++) {
+            RoadNetwork initial = RandomNetworks.network(seed, 50, 3, seed % 2 == 1);
+            VersionedRoadNetwork versioned = new VersionedRoadNetwork(initial);
+            AllPairsShortestPaths tables = AllPairsShortestPaths.compute(initial);
+            Random random = new Random(seed);
+            for (int step = 0; step < 20; step++) {
+                int from = random.nextInt(50);
+                int to = random.nextInt(50);
+                if (from == to) {
+                    continue;
+                }
+                RoadChange change = random.nextInt(3) == 0
+                        ? versioned.removeRoad("C" + from, "C" + to)
+                        : versioned.setRoadDistance("C" + from, "C" + to, 1 + random.nextInt(150));
+                if (change == null) {
+                    continue;
+                }
+                tables = tables.withRoadChange(change);
+                RoadNetwork current = change.getCurrent();
+                assertSame(current, tables.getNetwork());
+                for (int source = 0; source < current.getNumberOfCities(); source++) {
+                    assertTablesMatch(current, tables, source, RandomNetworks.distancesFrom(current, source));
+                }
+            }
+        }
+    }
+
+    /**
+     * Distances must equal a fresh search, every next hop must lie on a shortest path, and the path rebuilt from
+     * next hops must have exactly the tabled length. Ties may pick different hops than a fresh search.
+     */
+    private static void assertTablesMatch(RoadNetwork network, AllPairsShortestPaths tables, int source, double[] expected) {
+        City sourceCity = network.getCityByIndex(source);
+        for (int target = 0; target < expected.length; target++) {
+            String pair = source + " -> " + target;
+            assertEquals(expected[target], tables.distance(source, target), 1e-9, pair);
+            if (source == target || expected[target] == Double.POSITIVE_INFINITY) {
+                assertEquals(-1, tables.nextHop(source, target), pair);
+                continue;
+            }
+            int hop = tables.nextHop(source, target);
+            assertTrue(hop >= 0, "missing next hop " + pair);
+            double road = network.getDirectDistance(sourceCity, network.getCityByIndex(hop));
+            assertEquals(expected[target], road + tables.distance(hop, target), 1e-9, "next hop " + hop + " of " + pair);
+
+            List<City> path = tables.path(source, target);
+            assertEquals(sourceCity, path.get(0));
+            assertEquals(network.getCityByIndex(target), path.get(path.size() - 1));
+            double length = 0;
+            for (int i = 0; i + 1 < path.size(); i++) {
+                length += network.getDirectDistance(path.get(i), path.get(i + 1));
+            }
+            assertEquals(expected[target], length, 1e-9, "path " + pair);
+        }
+    }
+}
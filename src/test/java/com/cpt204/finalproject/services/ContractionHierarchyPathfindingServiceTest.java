@@ -0,0 +1,63 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContractionHierarchyPathfindingServiceTest {
+
+    private static final String HIERARCHY_ALGORITHM = "ContractionHierarchies";
+
+    @Test
+    void roadUpdatesAreAnsweredCorrectlyWhileAndAfterTheHierarchyIsRebuilt() throws InterruptedException {
+        RoadNetwork initial = RandomNetworks.network(11, 400, 3, false);
+        VersionedRoadNetwork versioned = new VersionedRoadNetwork(initial);
+        ContractionHierarchyPathfindingService service = new ContractionHierarchyPathfindingService();
+        assertPathsMatch(service, initial);
+
+        RoadChange change = versioned.setRoadDistance("C0", "C1", 1);
+        assertNotNull(change);
+        service.roadChanged(change);
+        RoadNetwork updated = change.getCurrent();
+        assertPathsMatch(service, updated); // plain searches until the new hierarchy is ready
+        assertPathsMatch(service, initial);
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!HIERARCHY_ALGORITHM.equals(query(service, updated, 0, 1).getAlgorithmName())) {
+            assertTrue(System.currentTimeMillis() < deadline, "the background rebuild never finished");
+            Thread.sleep(10);
+        }
+        assertPathsMatch(service, updated);
+        double[][] table = service.computeDistanceTable(updated, List.of(city(updated, 0), city(updated, 5)),
+                List.of(city(updated, 1), city(updated, 7)));
+        assertEquals(RandomNetworks.distancesFrom(updated, 0)[7], table[0][1], 1e-9);
+        assertEquals(RandomNetworks.distancesFrom(updated, 5)[1], table[1][0], 1e-9);
+    }
+
+    private static void assertPathsMatch(PathfindingService service, RoadNetwork network) {
+        for (int source = 0; source < 10; source++) {
+            double[] expected = RandomNetworks.distancesFrom(network, source);
+            for (int target = 0; target < network.getNumberOfCities(); target += 37) {
+                PathfindingService.PathResult result = query(service, network, source, target);
+                assertEquals(expected[target], result.getTotalDistance(), 1e-9,
+                        result.getAlgorithmName() + " " + source + " -> " + target);
+            }
+        }
+    }
+
+    private static PathfindingService.PathResult query(PathfindingService service, RoadNetwork network, int source, int target) {
+        return service.findShortestPath(network, city(network, source), city(network, target), List.of(), false, 0);
+    }
+
+    private static City city(RoadNetwork network, int index) {
+        return network.getCityByIndex(index);
+    }
+}
@@ -0,0 +1,74 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistanceCacheTest {
+
+    @Test
+    void requestForANewVersionDoesNotJoinAComputationForAnOlderOne() throws Exception {
+        RoadNetwork initial = RandomNetworks.network(3, 30, 3, true);
+        VersionedRoadNetwork versioned = new VersionedRoadNetwork(initial);
+        RoadChange change = versioned.setRoadDistance("C0", "C1", 1);
+        assertNotNull(change);
+        RoadNetwork updated = change.getCurrent();
+
+        CountDownLatch oldSearchStarted = new CountDownLatch(1);
+        CountDownLatch releaseOldSearch = new CountDownLatch(1);
+        PathfindingService dijkstra = new BinaryHeapDijkstraService();
+        PathfindingService blockingOnOldVersion = (network, start, end, attractions, useTimeout, timeoutMillis) -> {
+            if (network == initial) {
+                oldSearchStarted.countDown();
+                try {
+                    releaseOldSearch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return dijkstra.findShortestPath(network, start, end, attractions, useTimeout, timeoutMillis);
+        };
+
+        DistanceCache cache = new DistanceCache(dijkstra);
+        Set<City> cities = new LinkedHashSet<>(List.of(new City("C0"), new City("C1"), new City("C7")));
+        CompletableFuture<DistanceCache.Entry> oldRequest =
+                CompletableFuture.supplyAsync(() -> cache.getOrComputeEntry(cities, initial, blockingOnOldVersion));
+        assertTrue(oldSearchStarted.await(10, TimeUnit.SECONDS), "the old-version computation never started");
+        try {
+            CompletableFuture<DistanceCache.Entry> newRequest =
+                    CompletableFuture.supplyAsync(() -> cache.getOrComputeEntry(cities, updated, blockingOnOldVersion));
+            DistanceCache.Entry entry = newRequest.get(10, TimeUnit.SECONDS); // times out if it waits on the old flight
+            assertSame(updated, entry.getNetwork());
+            assertDistances(updated, entry);
+        } finally {
+            releaseOldSearch.countDown();
+        }
+        DistanceCache.Entry oldEntry = oldRequest.get(10, TimeUnit.SECONDS);
+        assertSame(initial, oldEntry.getNetwork());
+        assertDistances(initial, oldEntry);
+    }
+
+    private static void assertDistances(RoadNetwork network, DistanceCache.Entry entry) {
+        List<City> nodes = entry.getNodeList();
+        for (int i = 0; i < nodes.size(); i++) {
+            double[] expected = RandomNetworks.distancesFrom(network, network.getCityIndex(nodes.get(i)));
+            for (int j = 0; j < nodes.size(); j++) {
+                assertEquals(expected[network.getCityIndex(nodes.get(j))], entry.getDistances()[i][j], 1e-9, i + " -> " + j);
+            }
+        }
+    }
+}
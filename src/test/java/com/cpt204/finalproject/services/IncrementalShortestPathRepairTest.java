@@ -0,0 +1,68 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.RoadChange;
+import com.cpt204.finalproject.model.RoadNetwork;
+import com.cpt204.finalproject.model.VersionedRoadNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalShortestPathRepairTest {
+
+    @Test
+    void repairedRowsMatchAFullSearchAfterRandomEdits() {
+        for (long seed = 1; seed <= 8; seed++) {
+            RoadNetwork initial = RandomNetworks.network(seed, 60, 3, seed % 2 == 0);
+            VersionedRoadNetwork versioned = new VersionedRoadNetwork(initial);
+            int numCities = initial.getNumberOfCities();
+            Random random = new Random(seed);
+
+            // One row and tree per source, kept up to date only through repairs
+            double[][] rows = new double[numCities][numCities];
+            int[][] trees = new int[numCities][numCities];
+            for (int source = 0; source < numCities; source++) {
+                BinaryHeapDijkstraService.computeAllDistances(initial.getAdjacency(), source, rows[source], trees[source],
+                        new IndexedMinHeap(numCities));
+            }
+
+            for (int step = 0; step < 30; step++) {
+                int from = random.nextInt(numCities);
+                int to = random.nextInt(numCities);
+                if (from == to) {
+                    continue;
+                }
+                RoadChange change = random.nextInt(3) == 0
+                        ? versioned.removeRoad("C" + from, "C" + to)
+                        : versioned.setRoadDistance("C" + from, "C" + to, 1 + random.nextInt(150));
+                if (change == null) {
+                    continue;
+                }
+                IncrementalShortestPathRepair repair = new IncrementalShortestPathRepair(change);
+                RoadNetwork current = change.getCurrent();
+                for (int source = 0; source < numCities; source++) {
+                    repair.repair(rows[source], trees[source]);
+                    assertArrayEquals(RandomNetworks.distancesFrom(current, source), rows[source],
+                            "seed " + seed + ", step " + step + ", source " + source);
+                    assertTreeMatchesRow(current, source, rows[source], trees[source]);
+                }
+            }
+        }
+    }
+
+    /** Every reachable node's tree parent must reach it over a road that closes the distance exactly. */
+    private static void assertTreeMatchesRow(RoadNetwork network, int source, double[] dist, int[] prev) {
+        for (int v = 0; v < dist.length; v++) {
+            if (v == source || dist[v] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            int parent = prev[v];
+            assertTrue(parent >= 0, "reachable node " + v + " has no tree parent");
+            double road = network.getDirectDistance(network.getCityByIndex(parent), network.getCityByIndex(v));
+            assertEquals(dist[v], dist[parent] + road, 1e-9, "tree edge " + parent + " -> " + v);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PoiOptimizerAgreementTest {
+
+    private final PoiOptimizerService permutation = new PermutationPoiOptimizerService(new BinaryHeapDijkstraService());
+    private final PoiOptimizerService dynamicProgramming = new DynamicProgrammingPoiOptimizerService(null, new BinaryHeapDijkstraService());
+    private final PoiOptimizerService branchAndBound = new BranchAndBoundPoiOptimizerService(new BinaryHeapDijkstraService());
+
+    @Test
+    void allOptimizersFindTheSameShortestRoute() {
+        Random random = new Random(17);
+        for (int poiCount = 1; poiCount <= 8; poiCount++) {
+            for (int trial = 0; trial < 5; trial++) {
+                Instance instance = new Instance(random, poiCount);
+                double expected = instance.solve(permutation);
+                assertEquals(expected, instance.solve(dynamicProgramming), 1e-6, poiCount + " POIs, DP");
+                assertEquals(expected, instance.solve(branchAndBound), 1e-6, poiCount + " POIs, branch and bound");
+            }
+        }
+    }
+
+    @Test
+    void parallelPermutationSearchMatchesDynamicProgramming() {
+        Random random = new Random(53);
+        for (int poiCount = 9; poiCount <= 10; poiCount++) { // split into fork-join prefix tasks from 9 POIs
+            for (int trial = 0; trial < 2; trial++) {
+                Instance instance = new Instance(random, poiCount);
+                assertEquals(instance.solve(dynamicProgramming), instance.solve(permutation), 1e-6, poiCount + " POIs");
+            }
+        }
+    }
+
+    @Test
+    void dynamicProgrammingAndBranchAndBoundAgreeBeyondPermutationSizes() {
+        Random random = new Random(29);
+        for (int poiCount = 9; poiCount <= 13; poiCount++) {
+            for (int trial = 0; trial < 3; trial++) {
+                Instance instance = new Instance(random, poiCount);
+                assertEquals(instance.solve(dynamicProgramming), instance.solve(branchAndBound), 1e-6, poiCount + " POIs");
+            }
+        }
+    }
+
+    @Test
+    void dynamicProgrammingSplitsLargeLayersWithoutChangingTheResult() {
+        Random random = new Random(67);
+        for (int poiCount = 15; poiCount <= 16; poiCount++) { // the middle layers exceed 2048 masks and are forked
+            Instance instance = new Instance(random, poiCount);
+            assertEquals(instance.solve(branchAndBound), instance.solve(dynamicProgramming), 1e-6, poiCount + " POIs");
+        }
+    }
+
+    @Test
+    void unreachableLegsAreRoutedAround() {
+        Random random = new Random(41);
+        for (int trial = 0; trial < 10; trial++) {
+            Instance instance = new Instance(random, 6);
+            for (int i = 0; i < instance.size; i++) {
+                for (int j = 0; j < instance.size; j++) {
+                    if (i != j && random.nextInt(4) == 0) {
+                        instance.distances[i][j] = Double.POSITIVE_INFINITY;
+                    }
+                }
+            }
+            double expected = instance.solve(permutation);
+            assertEquals(expected, instance.solve(dynamicProgramming), 1e-6, "DP");
+            assertEquals(expected, instance.solve(branchAndBound), 1e-6, "branch and bound");
+        }
+    }
+
+    /** A random |S| x |S| matrix over [start, POI 1..n, end] and the city objects naming its rows. */
+    private static final class Instance {
+        private final int size;
+        private final double[][] distances;
+        private final List<City> nodes = new ArrayList<>();
+
+        Instance(Random random, int poiCount) {
+            size = poiCount + 2;
+            distances = RandomNetworks.matrix(random, size);
+            for (int i = 0; i < size; i++) {
+                nodes.add(new City("N" + i));
+            }
+        }
+
+        /**
+         * Runs the optimizer through the city-based matrix API and checks that the returned order has the
+         * reported length.
+         * @return The reported route length.
+         */
+        double solve(PoiOptimizerService optimizer) {
+            Map<City, Integer> indexInS = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                indexInS.put(nodes.get(i), i);
+            }
+            List<City> pois = nodes.subList(1, size - 1);
+            PoiOptimizerService.OptimizerResult result = optimizer.findBestPoiOrder(nodes.get(0), nodes.get(size - 1), pois,
+                    indexInS.keySet(), distances, indexInS, nodes, false, 0);
+            assertFalse(result.isTimedOut(), result.getAlgorithmName());
+            if (result.getTotalDistance() == Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY;
+            }
+            List<City> order = result.getBestOrder();
+            assertEquals(new HashSet<>(pois), new HashSet<>(order), result.getAlgorithmName() + " must visit every POI");
+            assertEquals(pois.size(), order.size(), result.getAlgorithmName() + " must visit each POI once");
+            double length = 0;
+            int previous = 0;
+            for (City poi : order) {
+                int next = indexInS.get(poi);
+                length += distances[previous][next];
+                previous = next;
+            }
+            length += distances[previous][size - 1];
+            assertEquals(result.getTotalDistance(), length, 1e-6, result.getAlgorithmName() + " order length");
+            return result.getTotalDistance();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.cpt204.finalproject.services;
+
+import com.cpt204.finalproject.model.City;
+import com.cpt204.finalproject.model.Road;
+import com.cpt204.finalproject.model.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded random inputs shared by the tests: road networks with cities named C0..C(V-1) and distance matrices.
+ */
+final class RandomNetworks {
+
+    private RandomNetworks() {
+    }
+
+    /**
+     * @param seed The random seed.
+     * @param numCities The number of cities.
+     * @param roadsPerCity The number of roads leaving each city (targets may repeat).
+     * @param twoWay true to add every road in both directions.
+     * @return A network with whole-unit road distances between 1 and 100.
+     */
+    static RoadNetwork network(long seed, int numCities, int roadsPerCity, boolean twoWay) {
+        Random random = new Random(seed);
+        List<City> cities = new ArrayList<>(numCities);
+        for (int i = 0; i < numCities; i++) {
+            cities.add(new City("C" + i));
+        }
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < numCities; i++) {
+            for (int k = 0; k < roadsPerCity; k++) {
+                int j = random.nextInt(numCities);
+                double distance = 1 + random.nextInt(100);
+                roads.add(new Road(cities.get(i), cities.get(j), distance));
+                if (twoWay) {
+                    roads.add(new Road(cities.get(j), cities.get(i), distance));
+                }
+            }
+        }
+        return new RoadNetwork(cities, roads, List.of());
+    }
+
+    /**
+     * @param random The random source.
+     * @param size The number of rows and columns.
+     * @return An asymmetric matrix of whole-unit distances between 1 and 1000, with zeros on the diagonal.
+     */
+    static double[][] matrix(Random random, int size) {
+        double[][] distances = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                distances[i][j] = i == j ? 0 : 1 + random.nextInt(1000);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * @return Full single-source distances on {@code network}, computed from scratch.
+     */
+    static double[] distancesFrom(RoadNetwork network, int source) {
+        int numCities = network.getNumberOfCities();
+        double[] dist = new double[numCities];
+        BinaryHeapDijkstraService.computeAllDistances(network.getAdjacency(), source, dist, new int[numCities], new IndexedMinHeap(numCities));
+        return dist;
+    }
+}